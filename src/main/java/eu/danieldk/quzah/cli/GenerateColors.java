@@ -1,6 +1,8 @@
 package eu.danieldk.quzah.cli;
 
+import eu.danieldk.quzah.colorset.AnnealingSchedule;
 import eu.danieldk.quzah.colorset.ColorSetGenerator;
+import eu.danieldk.quzah.colorset.GeometricSchedule;
 import eu.danieldk.quzah.colorset.SimulatedAnnealingGenerator;
 import eu.danieldk.quzah.colorspace.RGB;
 import eu.danieldk.quzah.random.PastelRandomRGB;
@@ -11,6 +13,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 /**
@@ -29,7 +32,9 @@ public class GenerateColors {
 
         RandomRGB randomRGB = createColorGenerator(options, commandLine);
 
-        ColorSetGenerator colorSetGenerator = new SimulatedAnnealingGenerator(randomRGB);
+        AnnealingSchedule schedule = createSchedule(options, commandLine);
+
+        ColorSetGenerator colorSetGenerator = new SimulatedAnnealingGenerator(randomRGB, new Random(), schedule);
 
         int n = Integer.parseInt(commandLine.getArgs()[0]);
         for (int i = 1; i <= n; ++i) {
@@ -66,6 +71,30 @@ public class GenerateColors {
         return randomRGB;
     }
 
+    /**
+     * Create the annealing schedule, stopping on stagnation if the <i>-p</i> option is used.
+     */
+    private static AnnealingSchedule createSchedule(Options options, CommandLine commandLine) {
+        if (!commandLine.hasOption('p'))
+            return new GeometricSchedule();
+
+        int patience = 0;
+        try {
+            patience = Integer.parseInt(commandLine.getOptionValue('p'));
+        } catch (NumberFormatException e) {
+            System.err.println(String.format("Invalid patience: %s", commandLine.getOptionValue('p')));
+            usage(options);
+        }
+
+        if (patience < 0) {
+            System.err.println(String.format("Patience should not be negative: %d", patience));
+            usage(options);
+        }
+
+        return new GeometricSchedule(GeometricSchedule.DEFAULT_INITIAL_TEMPERATURE,
+                GeometricSchedule.DEFAULT_COOLING_FACTOR, patience);
+    }
+
     /**
      * Parse command line options, using GNU-style option parsing.
      * @param args Program arguments.
@@ -92,6 +121,10 @@ public class GenerateColors {
     private static Options programOptions() {
         Options options = new Options();
         options.addOption("g", "generator", true, "Generator to use: uniform, pastel (default: uniform)");
+        options.addOption("p", "patience", true,
+                "Stop annealing after this many iterations without improvement, e.g. 10. Small color sets are " +
+                        "generated up to twice as fast (default: never, all iterations are run as in " +
+                        "earlier versions)");
         return options;
     }
 
@@ -0,0 +1,129 @@
+package eu.danieldk.quzah.colorset;
+
+/**
+ * Base class for annealing schedules. This class holds the amount of work per iteration and
+ * implements a stopping rule based on stagnation: annealing stops when the minimum distance
+ * between colors did not improve for a given number of iterations (the patience).
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public abstract class AbstractAnnealingSchedule implements AnnealingSchedule {
+    /**
+     * The default initial temperature.
+     */
+    public static final double DEFAULT_INITIAL_TEMPERATURE = 10.;
+
+    /**
+     * The default maximum number of iterations.
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+    /**
+     * The default maximum number of replacements that is considered per iteration.
+     */
+    public static final int DEFAULT_MAX_REPLACEMENTS = 25600;
+
+    /**
+     * The default box radius (the 5x5x5 box around the current color).
+     */
+    public static final int DEFAULT_BOX_RADIUS = 2;
+
+    /**
+     * The default minimum improvement of the minimum distance, in CIE Lab units.
+     */
+    public static final double DEFAULT_MIN_IMPROVEMENT = 0.1;
+
+    /**
+     * Patience value that disables stopping on stagnation.
+     */
+    public static final int NO_PATIENCE = 0;
+
+    private final double initialTemperature;
+
+    private final int maxIterations;
+
+    private final int maxReplacements;
+
+    private final int boxRadius;
+
+    private final int patience;
+
+    private final double minImprovement;
+
+    /**
+     * Construct a schedule.
+     *
+     * @param initialTemperature The initial temperature.
+     * @param maxIterations      The maximum number of iterations.
+     * @param maxReplacements    The maximum number of replacements per iteration.
+     * @param boxRadius          The box radius for replacements around the current color.
+     * @param patience           The number of stagnant iterations after which annealing stops,
+     *                           or {@link #NO_PATIENCE}.
+     * @param minImprovement     The minimum improvement of the minimum distance.
+     */
+    protected AbstractAnnealingSchedule(double initialTemperature, int maxIterations, int maxReplacements,
+                                        int boxRadius, int patience, double minImprovement) {
+        if (initialTemperature <= 0.)
+            throw new IllegalArgumentException(String.format("Initial temperature should be positive, was: %f",
+                    initialTemperature));
+        if (maxIterations < 1)
+            throw new IllegalArgumentException(String.format("Maximum iterations should be positive, was: %d",
+                    maxIterations));
+        if (maxReplacements < 10)
+            throw new IllegalArgumentException(String.format("Maximum replacements should be at least 10, was: %d",
+                    maxReplacements));
+        if (boxRadius < 1)
+            throw new IllegalArgumentException(String.format("Box radius should be positive, was: %d", boxRadius));
+        if (patience < 0)
+            throw new IllegalArgumentException(String.format("Patience should not be negative, was: %d", patience));
+        if (Double.isNaN(minImprovement) || minImprovement < 0.)
+            throw new IllegalArgumentException(String.format("Minimum improvement should not be negative, was: %f",
+                    minImprovement));
+
+        this.initialTemperature = initialTemperature;
+        this.maxIterations = maxIterations;
+        this.maxReplacements = maxReplacements;
+        this.boxRadius = boxRadius;
+        this.patience = patience;
+        this.minImprovement = minImprovement;
+    }
+
+    @Override
+    public double initialTemperature() {
+        return initialTemperature;
+    }
+
+    @Override
+    public int maxIterations() {
+        return maxIterations;
+    }
+
+    @Override
+    public int maxReplacements() {
+        return maxReplacements;
+    }
+
+    @Override
+    public int boxRadius() {
+        return boxRadius;
+    }
+
+    @Override
+    public double minImprovement() {
+        return minImprovement;
+    }
+
+    /**
+     * Get the number of stagnant iterations after which annealing stops.
+     *
+     * @return The patience, {@link #NO_PATIENCE} if stopping on stagnation is disabled.
+     */
+    public int patience() {
+        return patience;
+    }
+
+    @Override
+    public boolean converged(AnnealingProgress progress) {
+        return patience != NO_PATIENCE && progress.getStagnantIterations() >= patience;
+    }
+}
@@ -0,0 +1,69 @@
+package eu.danieldk.quzah.colorset;
+
+/**
+ * Annealing schedule that steers the temperature towards a target acceptance ratio. If more
+ * replacements were accepted than the target, the temperature is lowered, otherwise it is
+ * raised.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class AdaptiveSchedule extends AbstractAnnealingSchedule {
+    /**
+     * The default factor by which the temperature is adjusted.
+     */
+    public static final double DEFAULT_ADJUSTMENT = 0.9;
+
+    private final double targetAcceptance;
+
+    private final double adjustment;
+
+    /**
+     * Construct a schedule with the default number of iterations and replacements.
+     *
+     * @param initialTemperature The initial temperature.
+     * @param targetAcceptance   The target acceptance ratio, in (0, 1).
+     * @param patience           The number of stagnant iterations after which annealing stops,
+     *                           or {@link #NO_PATIENCE}.
+     */
+    public AdaptiveSchedule(double initialTemperature, double targetAcceptance, int patience) {
+        this(initialTemperature, targetAcceptance, DEFAULT_ADJUSTMENT, DEFAULT_MAX_ITERATIONS,
+                DEFAULT_MAX_REPLACEMENTS, DEFAULT_BOX_RADIUS, patience, DEFAULT_MIN_IMPROVEMENT);
+    }
+
+    /**
+     * Construct a schedule.
+     *
+     * @param initialTemperature The initial temperature.
+     * @param targetAcceptance   The target acceptance ratio, in (0, 1).
+     * @param adjustment         The factor by which the temperature is lowered, in (0, 1). The
+     *                           temperature is raised by dividing by this factor.
+     * @param maxIterations      The maximum number of iterations.
+     * @param maxReplacements    The maximum number of replacements per iteration.
+     * @param boxRadius          The box radius for replacements around the current color.
+     * @param patience           The number of stagnant iterations after which annealing stops,
+     *                           or {@link #NO_PATIENCE}.
+     * @param minImprovement     The minimum improvement of the minimum distance.
+     */
+    public AdaptiveSchedule(double initialTemperature, double targetAcceptance, double adjustment,
+                            int maxIterations, int maxReplacements, int boxRadius, int patience,
+                            double minImprovement) {
+        super(initialTemperature, maxIterations, maxReplacements, boxRadius, patience, minImprovement);
+
+        if (targetAcceptance <= 0. || targetAcceptance >= 1.)
+            throw new IllegalArgumentException(String.format("Target acceptance should be in (0, 1), was: %f",
+                    targetAcceptance));
+        if (adjustment <= 0. || adjustment >= 1.)
+            throw new IllegalArgumentException(String.format("Adjustment should be in (0, 1), was: %f", adjustment));
+
+        this.targetAcceptance = targetAcceptance;
+        this.adjustment = adjustment;
+    }
+
+    @Override
+    public double nextTemperature(AnnealingProgress progress) {
+        if (progress.getAcceptanceRatio() > targetAcceptance)
+            return progress.getTemperature() * adjustment;
+        else
+            return progress.getTemperature() / adjustment;
+    }
+}
@@ -0,0 +1,379 @@
+package eu.danieldk.quzah.colorset;
+
+import eu.danieldk.quzah.colorspace.RGB;
+import eu.danieldk.quzah.random.RandomRGB;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A checkpoint of a {@link SimulatedAnnealingGenerator} run. The checkpoint contains the colors,
+ * the annealing state, and the state of the random number generators. Resuming from a checkpoint
+ * gives the same color set as an uninterrupted run. The checkpoint also records the parameters of
+ * the annealing schedule that determine the amount of work, so that a checkpoint cannot be resumed
+ * with a different schedule by accident.
+ * <p/>
+ * Checkpoints can be stored in a compact binary format using {@link #write(OutputStream)}.
+ * The random number generators are stored using Java serialization. When a checkpoint is read,
+ * only {@link Random} and {@link RandomRGB} implementations are deserialized. Consequently, the
+ * fields of a {@link RandomRGB} implementation should be primitives, {@link Random}s, or
+ * {@link RandomRGB}s.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class AnnealingCheckpoint {
+    private static final int MAGIC = 0x515a4843;
+
+    private static final int VERSION = 4;
+
+    // Upper bounds on lengths, to reject corrupt checkpoints.
+    private static final int MAX_COLORS = 1 << 20;
+
+    private static final int MAX_STATE_SIZE = 1 << 20;
+
+    private final int iteration;
+
+    private final double temperature;
+
+    private final double bestMinDistance;
+
+    private final int stagnantIterations;
+
+    private final int maxIterations;
+
+    private final int maxReplacements;
+
+    private final int boxRadius;
+
+    private final double minImprovement;
+
+    private final int[] colors;
+
+    // The random number generator and the color generator, serialized in one stream to retain
+    // shared references.
+    private final byte[] generatorState;
+
+    AnnealingCheckpoint(AnnealingSchedule schedule, int iteration, double temperature, double bestMinDistance,
+                        int stagnantIterations, List<RGB> colors, Random random, RandomRGB colorGenerator) {
+        this.iteration = iteration;
+        this.temperature = temperature;
+        this.bestMinDistance = bestMinDistance;
+        this.stagnantIterations = stagnantIterations;
+        this.maxIterations = schedule.maxIterations();
+        this.maxReplacements = schedule.maxReplacements();
+        this.boxRadius = schedule.boxRadius();
+        this.minImprovement = schedule.minImprovement();
+
+        this.colors = new int[colors.size()];
+        for (int i = 0; i < colors.size(); ++i)
+            this.colors[i] = colors.get(i).getRGB();
+
+        this.generatorState = serialize(random, colorGenerator);
+    }
+
+    private AnnealingCheckpoint(int iteration, double temperature, double bestMinDistance, int stagnantIterations,
+                                int maxIterations, int maxReplacements, int boxRadius, double minImprovement,
+                                int[] colors, byte[] generatorState) {
+        this.iteration = iteration;
+        this.temperature = temperature;
+        this.bestMinDistance = bestMinDistance;
+        this.stagnantIterations = stagnantIterations;
+        this.maxIterations = maxIterations;
+        this.maxReplacements = maxReplacements;
+        this.boxRadius = boxRadius;
+        this.minImprovement = minImprovement;
+        this.colors = colors;
+        this.generatorState = generatorState;
+    }
+
+    /**
+     * Get the number of iterations that were completed.
+     *
+     * @return The number of iterations.
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * Get the annealing temperature for the next iteration.
+     *
+     * @return The temperature.
+     */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * Get the largest minimum distance between colors that was seen in the run.
+     *
+     * @return The best minimum distance.
+     */
+    public double getBestMinDistance() {
+        return bestMinDistance;
+    }
+
+    /**
+     * Get the number of iterations since the best minimum distance was last improved.
+     *
+     * @return The number of stagnant iterations.
+     */
+    public int getStagnantIterations() {
+        return stagnantIterations;
+    }
+
+    /**
+     * Get the colors at the time of the checkpoint.
+     *
+     * @return The colors.
+     */
+    public List<RGB> getColors() {
+        List<RGB> rgbs = new ArrayList<>(colors.length);
+        for (int color : colors)
+            rgbs.add(new RGB(color));
+
+        return rgbs;
+    }
+
+    /**
+     * Check that the checkpoint was stored by a run with the same schedule parameters.
+     *
+     * @param schedule The schedule of the run that resumes from the checkpoint.
+     * @throws IllegalArgumentException If the schedule parameters differ.
+     */
+    void checkSchedule(AnnealingSchedule schedule) {
+        if (schedule.maxIterations() != maxIterations || schedule.maxReplacements() != maxReplacements ||
+                schedule.boxRadius() != boxRadius || Double.compare(schedule.minImprovement(), minImprovement) != 0)
+            throw new IllegalArgumentException(String.format("Checkpoint was stored with a different schedule " +
+                    "(max iterations: %d, max replacements: %d, box radius: %d, minimum improvement: %f), " +
+                    "schedule has (max iterations: %d, max replacements: %d, box radius: %d, minimum improvement: %f)",
+                    maxIterations, maxReplacements, boxRadius, minImprovement, schedule.maxIterations(),
+                    schedule.maxReplacements(), schedule.boxRadius(), schedule.minImprovement()));
+    }
+
+    /**
+     * Restore the random number generator and the color generator. Every call returns new
+     * instances.
+     *
+     * @return The generators.
+     */
+    Generators restoreGenerators() {
+        try {
+            return deserialize(generatorState);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Checkpoint contains invalid generator state", e);
+        }
+    }
+
+    /**
+     * Write the checkpoint to an output stream.
+     *
+     * @param out The output stream.
+     * @throws IOException If the checkpoint could not be written.
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(out);
+
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(VERSION);
+        dataOut.writeInt(iteration);
+        dataOut.writeDouble(temperature);
+        dataOut.writeDouble(bestMinDistance);
+        dataOut.writeInt(stagnantIterations);
+        dataOut.writeInt(maxIterations);
+        dataOut.writeInt(maxReplacements);
+        dataOut.writeInt(boxRadius);
+        dataOut.writeDouble(minImprovement);
+
+        dataOut.writeInt(colors.length);
+        for (int color : colors)
+            dataOut.writeInt(color);
+
+        dataOut.writeInt(generatorState.length);
+        dataOut.write(generatorState);
+
+        dataOut.flush();
+    }
+
+    /**
+     * Read a checkpoint from an input stream.
+     *
+     * @param in The input stream.
+     * @return The checkpoint.
+     * @throws IOException If the checkpoint could not be read or is not a valid checkpoint.
+     */
+    public static AnnealingCheckpoint read(InputStream in) throws IOException {
+        DataInputStream dataIn = new DataInputStream(in);
+
+        if (dataIn.readInt() != MAGIC)
+            throw new IOException("Not an annealing checkpoint");
+
+        int version = dataIn.readInt();
+        if (version != VERSION)
+            throw new IOException(String.format("Unsupported checkpoint version: %d", version));
+
+        int iteration = dataIn.readInt();
+        double temperature = dataIn.readDouble();
+        double bestMinDistance = dataIn.readDouble();
+        int stagnantIterations = dataIn.readInt();
+        int maxIterations = dataIn.readInt();
+        int maxReplacements = dataIn.readInt();
+        int boxRadius = dataIn.readInt();
+        double minImprovement = dataIn.readDouble();
+
+        if (maxIterations < 1 || maxReplacements < 1 || boxRadius < 1 || !(minImprovement >= 0.))
+            throw new IOException(String.format("Invalid schedule parameters in checkpoint: max iterations: %d, " +
+                    "max replacements: %d, box radius: %d, minimum improvement: %f", maxIterations, maxReplacements,
+                    boxRadius, minImprovement));
+        if (iteration < 0 || iteration > maxIterations)
+            throw new IOException(String.format("Invalid iteration in checkpoint: %d", iteration));
+        if (!(temperature > 0.) || Double.isInfinite(temperature))
+            throw new IOException(String.format("Invalid temperature in checkpoint: %f", temperature));
+        if (!(bestMinDistance >= 0.) || Double.isInfinite(bestMinDistance))
+            throw new IOException(String.format("Invalid best minimum distance in checkpoint: %f", bestMinDistance));
+        if (stagnantIterations < 0)
+            throw new IOException(String.format("Invalid number of stagnant iterations in checkpoint: %d",
+                    stagnantIterations));
+
+        int[] colors = new int[readLength(dataIn, MAX_COLORS, "colors")];
+        for (int i = 0; i < colors.length; ++i)
+            colors[i] = dataIn.readInt();
+
+        byte[] generatorState = new byte[readLength(dataIn, MAX_STATE_SIZE, "generator state")];
+        dataIn.readFully(generatorState);
+
+        // Validate the generator state, so that corrupt checkpoints are rejected early.
+        deserialize(generatorState);
+
+        return new AnnealingCheckpoint(iteration, temperature, bestMinDistance, stagnantIterations, maxIterations,
+                maxReplacements, boxRadius, minImprovement, colors, generatorState);
+    }
+
+    private static int readLength(DataInputStream dataIn, int maxLength, String what) throws IOException {
+        int length = dataIn.readInt();
+        if (length < 0 || length > maxLength)
+            throw new IOException(String.format("Invalid length of %s: %d", what, length));
+
+        return length;
+    }
+
+    private static byte[] serialize(Random random, RandomRGB colorGenerator) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(random);
+            out.writeObject(colorGenerator);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Could not serialize generators: %s, %s", random,
+                    colorGenerator), e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Check that generators can be stored in a checkpoint and restored from it.
+     *
+     * @param random         The random number generator.
+     * @param colorGenerator The color generator.
+     * @throws IllegalArgumentException If the generators cannot be stored or restored.
+     */
+    static void checkGenerators(Random random, RandomRGB colorGenerator) {
+        try {
+            deserialize(serialize(random, colorGenerator));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Generators cannot be restored from checkpoints: %s, %s",
+                    random.getClass().getName(), colorGenerator.getClass().getName()), e);
+        }
+    }
+
+    private static Generators deserialize(byte[] state) throws IOException {
+        try (ObjectInputStream in = new RestrictedObjectInputStream(new ByteArrayInputStream(state))) {
+            Object random = in.readObject();
+            Object colorGenerator = in.readObject();
+
+            if (!(random instanceof Random) || !(colorGenerator instanceof RandomRGB))
+                throw new InvalidObjectException("Checkpoint does not contain valid generators");
+
+            return new Generators((Random) random, (RandomRGB) colorGenerator);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Checkpoint contains an unknown class", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final AnnealingCheckpoint that = (AnnealingCheckpoint) o;
+
+        if (iteration != that.iteration) return false;
+        if (Double.compare(that.temperature, temperature) != 0) return false;
+        if (Double.compare(that.bestMinDistance, bestMinDistance) != 0) return false;
+        if (stagnantIterations != that.stagnantIterations) return false;
+        if (maxIterations != that.maxIterations) return false;
+        if (maxReplacements != that.maxReplacements) return false;
+        if (boxRadius != that.boxRadius) return false;
+        if (Double.compare(that.minImprovement, minImprovement) != 0) return false;
+        if (!Arrays.equals(colors, that.colors)) return false;
+        if (!Arrays.equals(generatorState, that.generatorState)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = iteration;
+        long temp = Double.doubleToLongBits(temperature);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + Arrays.hashCode(colors);
+        return result;
+    }
+
+    /**
+     * The generators of an annealing run.
+     */
+    static class Generators {
+        final Random random;
+
+        final RandomRGB colorGenerator;
+
+        private Generators(Random random, RandomRGB colorGenerator) {
+            this.random = random;
+            this.colorGenerator = colorGenerator;
+        }
+    }
+
+    /**
+     * Object input stream that only resolves {@link Random} and {@link RandomRGB} implementations.
+     * Other classes are rejected before they are instantiated.
+     */
+    private static class RestrictedObjectInputStream extends ObjectInputStream {
+        private RestrictedObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            if (name.equals(Random.class.getName()))
+                return Random.class;
+
+            // Load without initialization, so that no code of a rejected class runs.
+            Class<?> cls = Class.forName(name, false, AnnealingCheckpoint.class.getClassLoader());
+            if (!RandomRGB.class.isAssignableFrom(cls))
+                throw new InvalidClassException(name, "Class is not allowed in checkpoints");
+
+            return cls;
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("Proxy classes are not allowed in checkpoints");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package eu.danieldk.quzah.colorset;
+
+/**
+ * The progress of a simulated annealing run after an iteration. This is used by an
+ * {@link AnnealingSchedule} to update the temperature and to decide when to stop.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class AnnealingProgress {
+    private final int iteration;
+
+    private final double temperature;
+
+    private final double acceptanceRatio;
+
+    private final double minDistance;
+
+    private final double bestMinDistance;
+
+    private final int stagnantIterations;
+
+    AnnealingProgress(int iteration, double temperature, double acceptanceRatio, double minDistance,
+                      double bestMinDistance, int stagnantIterations) {
+        this.iteration = iteration;
+        this.temperature = temperature;
+        this.acceptanceRatio = acceptanceRatio;
+        this.minDistance = minDistance;
+        this.bestMinDistance = bestMinDistance;
+        this.stagnantIterations = stagnantIterations;
+    }
+
+    /**
+     * Get the number of iterations that were completed.
+     *
+     * @return The number of iterations.
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * Get the temperature that was used in the last iteration.
+     *
+     * @return The temperature.
+     */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * Get the fraction of the replacements that were accepted in the last iteration.
+     *
+     * @return The acceptance ratio.
+     */
+    public double getAcceptanceRatio() {
+        return acceptanceRatio;
+    }
+
+    /**
+     * Get the minimum distance between two colors after the last iteration.
+     *
+     * @return The minimum distance.
+     */
+    public double getMinDistance() {
+        return minDistance;
+    }
+
+    /**
+     * Get the largest minimum distance that was seen in the run.
+     *
+     * @return The best minimum distance.
+     */
+    public double getBestMinDistance() {
+        return bestMinDistance;
+    }
+
+    /**
+     * Get the number of iterations since the best minimum distance was last improved.
+     *
+     * @return The number of stagnant iterations.
+     */
+    public int getStagnantIterations() {
+        return stagnantIterations;
+    }
+
+    @Override
+    public String toString() {
+        return "AnnealingProgress{" +
+                "iteration=" + iteration +
+                ", temperature=" + temperature +
+                ", acceptanceRatio=" + acceptanceRatio +
+                ", minDistance=" + minDistance +
+                ", bestMinDistance=" + bestMinDistance +
+                ", stagnantIterations=" + stagnantIterations +
+                '}';
+    }
+}
@@ -0,0 +1,63 @@
+package eu.danieldk.quzah.colorset;
+
+/**
+ * Interface for simulated annealing schedules. A schedule determines the temperature of each
+ * iteration, the amount of work per iteration, and when annealing stops.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public interface AnnealingSchedule {
+    /**
+     * Get the temperature of the first iteration.
+     *
+     * @return The initial temperature.
+     */
+    public double initialTemperature();
+
+    /**
+     * Get the temperature of the next iteration.
+     *
+     * @param progress The progress after the last iteration.
+     * @return The temperature.
+     */
+    public double nextTemperature(AnnealingProgress progress);
+
+    /**
+     * Get the maximum number of iterations.
+     *
+     * @return The maximum number of iterations.
+     */
+    public int maxIterations();
+
+    /**
+     * Get the maximum number of replacements that is considered in an iteration.
+     *
+     * @return The maximum number of replacements.
+     */
+    public int maxReplacements();
+
+    /**
+     * Get the maximum distance per component (R, G, or B) of replacements that are
+     * picked around the current color.
+     *
+     * @return The box radius.
+     */
+    public int boxRadius();
+
+    /**
+     * Get the increase of the minimum distance between colors that counts as an improvement.
+     * Iterations with a smaller increase are stagnant.
+     *
+     * @return The minimum improvement.
+     */
+    public double minImprovement();
+
+    /**
+     * Check whether annealing has converged and can be stopped before the maximum number of
+     * iterations.
+     *
+     * @param progress The progress after the last iteration.
+     * @return <tt>true</tt> if annealing should stop.
+     */
+    public boolean converged(AnnealingProgress progress);
+}
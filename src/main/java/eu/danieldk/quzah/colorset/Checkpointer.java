@@ -0,0 +1,18 @@
+package eu.danieldk.quzah.colorset;
+
+import java.io.IOException;
+
+/**
+ * Interface for classes that store checkpoints of a {@link SimulatedAnnealingGenerator}.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public interface Checkpointer {
+    /**
+     * Store a checkpoint. A checkpoint supersedes all earlier checkpoints of the same run.
+     *
+     * @param checkpoint The checkpoint.
+     * @throws IOException If the checkpoint could not be stored.
+     */
+    public void checkpoint(AnnealingCheckpoint checkpoint) throws IOException;
+}
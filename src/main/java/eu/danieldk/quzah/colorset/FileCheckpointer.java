@@ -0,0 +1,54 @@
+package eu.danieldk.quzah.colorset;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A {@link Checkpointer} that stores the last checkpoint in a file. The checkpoint is first written
+ * to a temporary file in the same directory and synced to disk. The temporary file then replaces
+ * the checkpoint file, so that the checkpoint file is not left in a partially written state.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class FileCheckpointer implements Checkpointer {
+    private final File file;
+
+    /**
+     * Construct a checkpointer that writes to a file.
+     *
+     * @param file The checkpoint file.
+     */
+    public FileCheckpointer(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void checkpoint(AnnealingCheckpoint checkpoint) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+
+        try (FileOutputStream fileOut = new FileOutputStream(tmpFile)) {
+            OutputStream out = new BufferedOutputStream(fileOut);
+            checkpoint.write(out);
+            out.flush();
+
+            // Ensure that the data is on disk before the rename, which may otherwise survive a crash without it.
+            fileOut.getFD().sync();
+        }
+
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the checkpoint from the checkpoint file.
+     *
+     * @return The checkpoint.
+     * @throws IOException If the checkpoint could not be read.
+     */
+    public AnnealingCheckpoint read() throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return AnnealingCheckpoint.read(in);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package eu.danieldk.quzah.colorset;
+
+/**
+ * Annealing schedule that multiplies the temperature by a constant cooling factor after
+ * every iteration.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class GeometricSchedule extends AbstractAnnealingSchedule {
+    /**
+     * The default cooling factor.
+     */
+    public static final double DEFAULT_COOLING_FACTOR = 0.9;
+
+    private final double coolingFactor;
+
+    /**
+     * Construct a schedule with the default parameters, without stopping on stagnation.
+     */
+    public GeometricSchedule() {
+        this(DEFAULT_INITIAL_TEMPERATURE, DEFAULT_COOLING_FACTOR, NO_PATIENCE);
+    }
+
+    /**
+     * Construct a schedule with the default number of iterations and replacements.
+     *
+     * @param initialTemperature The initial temperature.
+     * @param coolingFactor      The cooling factor, in (0, 1).
+     * @param patience           The number of stagnant iterations after which annealing stops,
+     *                           or {@link #NO_PATIENCE}.
+     */
+    public GeometricSchedule(double initialTemperature, double coolingFactor, int patience) {
+        this(initialTemperature, coolingFactor, DEFAULT_MAX_ITERATIONS, DEFAULT_MAX_REPLACEMENTS, DEFAULT_BOX_RADIUS,
+                patience, DEFAULT_MIN_IMPROVEMENT);
+    }
+
+    /**
+     * Construct a schedule.
+     *
+     * @param initialTemperature The initial temperature.
+     * @param coolingFactor      The cooling factor, in (0, 1).
+     * @param maxIterations      The maximum number of iterations.
+     * @param maxReplacements    The maximum number of replacements per iteration.
+     * @param boxRadius          The box radius for replacements around the current color.
+     * @param patience           The number of stagnant iterations after which annealing stops,
+     *                           or {@link #NO_PATIENCE}.
+     * @param minImprovement     The minimum improvement of the minimum distance.
+     */
+    public GeometricSchedule(double initialTemperature, double coolingFactor, int maxIterations,
+                             int maxReplacements, int boxRadius, int patience, double minImprovement) {
+        super(initialTemperature, maxIterations, maxReplacements, boxRadius, patience, minImprovement);
+
+        if (coolingFactor <= 0. || coolingFactor >= 1.)
+            throw new IllegalArgumentException(String.format("Cooling factor should be in (0, 1), was: %f",
+                    coolingFactor));
+
+        this.coolingFactor = coolingFactor;
+    }
+
+    @Override
+    public double nextTemperature(AnnealingProgress progress) {
+        return progress.getTemperature() * coolingFactor;
+    }
+}
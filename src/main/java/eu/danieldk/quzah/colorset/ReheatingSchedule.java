@@ -0,0 +1,82 @@
+package eu.danieldk.quzah.colorset;
+
+/**
+ * Annealing schedule that cools geometrically, but reheats when the minimum distance between
+ * colors stagnates. Reheating allows the annealer to escape local optima. The patience must
+ * be larger than the number of stagnant iterations before reheating, otherwise annealing would
+ * stop before it reheats.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class ReheatingSchedule extends AbstractAnnealingSchedule {
+    /**
+     * The default fraction of the initial temperature that is used when reheating.
+     */
+    public static final double DEFAULT_REHEAT_FRACTION = 0.5;
+
+    private final double coolingFactor;
+
+    private final int reheatAfter;
+
+    private final double reheatFraction;
+
+    /**
+     * Construct a schedule with the default number of iterations and replacements.
+     *
+     * @param initialTemperature The initial temperature.
+     * @param coolingFactor      The cooling factor, in (0, 1).
+     * @param reheatAfter        The number of stagnant iterations after which the temperature is raised.
+     * @param patience           The number of stagnant iterations after which annealing stops,
+     *                           or {@link #NO_PATIENCE}.
+     */
+    public ReheatingSchedule(double initialTemperature, double coolingFactor, int reheatAfter, int patience) {
+        this(initialTemperature, coolingFactor, reheatAfter, DEFAULT_REHEAT_FRACTION, DEFAULT_MAX_ITERATIONS,
+                DEFAULT_MAX_REPLACEMENTS, DEFAULT_BOX_RADIUS, patience, DEFAULT_MIN_IMPROVEMENT);
+    }
+
+    /**
+     * Construct a schedule.
+     *
+     * @param initialTemperature The initial temperature.
+     * @param coolingFactor      The cooling factor, in (0, 1).
+     * @param reheatAfter        The number of stagnant iterations after which the temperature is raised.
+     * @param reheatFraction     The fraction of the initial temperature to reheat to.
+     * @param maxIterations      The maximum number of iterations.
+     * @param maxReplacements    The maximum number of replacements per iteration.
+     * @param boxRadius          The box radius for replacements around the current color.
+     * @param patience           The number of stagnant iterations after which annealing stops,
+     *                           or {@link #NO_PATIENCE}.
+     * @param minImprovement     The minimum improvement of the minimum distance.
+     */
+    public ReheatingSchedule(double initialTemperature, double coolingFactor, int reheatAfter,
+                             double reheatFraction, int maxIterations, int maxReplacements, int boxRadius,
+                             int patience, double minImprovement) {
+        super(initialTemperature, maxIterations, maxReplacements, boxRadius, patience, minImprovement);
+
+        if (coolingFactor <= 0. || coolingFactor >= 1.)
+            throw new IllegalArgumentException(String.format("Cooling factor should be in (0, 1), was: %f",
+                    coolingFactor));
+        if (reheatAfter < 1)
+            throw new IllegalArgumentException(String.format("Reheat interval should be positive, was: %d",
+                    reheatAfter));
+        if (reheatFraction <= 0.)
+            throw new IllegalArgumentException(String.format("Reheat fraction should be positive, was: %f",
+                    reheatFraction));
+        if (patience != NO_PATIENCE && patience <= reheatAfter)
+            throw new IllegalArgumentException(String.format(
+                    "Patience should be larger than the reheat interval (%d), was: %d", reheatAfter, patience));
+
+        this.coolingFactor = coolingFactor;
+        this.reheatAfter = reheatAfter;
+        this.reheatFraction = reheatFraction;
+    }
+
+    @Override
+    public double nextTemperature(AnnealingProgress progress) {
+        int stagnant = progress.getStagnantIterations();
+        if (stagnant > 0 && stagnant % reheatAfter == 0)
+            return Math.max(progress.getTemperature(), initialTemperature() * reheatFraction);
+
+        return progress.getTemperature() * coolingFactor;
+    }
+}
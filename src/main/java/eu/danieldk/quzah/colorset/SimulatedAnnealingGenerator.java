@@ -7,6 +7,8 @@ import org.apache.sanselan.color.ColorConversions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.Serializable;
 import java.util.*;
 
 /**
@@ -19,26 +21,33 @@ import java.util.*;
  * find the global optimum.
  * <p/>
  * This method was proposed by: <i>C.A. Glasbey, et al., 2006</i>
+ * <p/>
+ * Since annealing large color sets can take a long time, the generator can periodically
+ * store an {@link AnnealingCheckpoint} using a {@link Checkpointer}. An interrupted run can
+ * be continued using {@link #resume(AnnealingCheckpoint)}.
+ * <p/>
+ * The temperature, the amount of work, and the stopping rule are determined by an
+ * {@link AnnealingSchedule}. By default, a {@link GeometricSchedule} is used.
  *
  * @author Daniël de Kok <me@danieldk.eu>
  */
 public class SimulatedAnnealingGenerator implements ColorSetGenerator {
     private static final Logger LOGGER = LoggerFactory.getLogger(SimulatedAnnealingGenerator.class);
 
-    // The maximum number of replacements that is considered.
-    private static final int MAX_REPLACEMENTS = 25600;
-
-    // The number of iterations in simulated annealing.
-    private static final int N_ITERATIONS = 100;
-
-    // Initial temperature for simulated annealing.
-    public static final double INITIAL_TEMPERATURE = 10.;
+    // Initial temperature of the default schedule.
+    public static final double INITIAL_TEMPERATURE = AbstractAnnealingSchedule.DEFAULT_INITIAL_TEMPERATURE;
 
     // The generator used to create random colors.
     private final RandomRGB colorGenerator;
 
     private final Random random;
 
+    private final AnnealingSchedule schedule;
+
+    private final Checkpointer checkpointer;
+
+    private final int checkpointInterval;
+
     /**
      * Create a {@link SimulatedAnnealingGenerator} using a {@link RandomRGB} to create
      * the initial set of colors and a random number generator for the annealing algorithm.
@@ -47,8 +56,67 @@ public class SimulatedAnnealingGenerator implements ColorSetGenerator {
      * @param random         The random number generator.
      */
     public SimulatedAnnealingGenerator(RandomRGB colorGenerator, Random random) {
+        this(colorGenerator, random, new GeometricSchedule());
+    }
+
+    /**
+     * Create a {@link SimulatedAnnealingGenerator} that uses the given annealing schedule.
+     *
+     * @param colorGenerator The random color generator.
+     * @param random         The random number generator.
+     * @param schedule       The annealing schedule.
+     */
+    public SimulatedAnnealingGenerator(RandomRGB colorGenerator, Random random, AnnealingSchedule schedule) {
+        this(colorGenerator, random, schedule, null, 0);
+    }
+
+    /**
+     * Create a {@link SimulatedAnnealingGenerator} that stores a checkpoint every
+     * <tt>checkpointInterval</tt> iterations. The state of the generators is part of the
+     * checkpoint, so the random number generator must be a plain {@link Random} and the color
+     * generator must be serializable, see {@link AnnealingCheckpoint}.
+     *
+     * @param colorGenerator     The random color generator.
+     * @param random             The random number generator.
+     * @param checkpointer       The checkpointer, or <tt>null</tt> to disable checkpoints.
+     * @param checkpointInterval The number of iterations between checkpoints.
+     */
+    public SimulatedAnnealingGenerator(RandomRGB colorGenerator, Random random, Checkpointer checkpointer,
+                                       int checkpointInterval) {
+        this(colorGenerator, random, new GeometricSchedule(), checkpointer, checkpointInterval);
+    }
+
+    /**
+     * Create a {@link SimulatedAnnealingGenerator} that uses the given annealing schedule and
+     * stores a checkpoint every <tt>checkpointInterval</tt> iterations. The random number
+     * generator must be a plain {@link Random} and the color generator must be serializable,
+     * see {@link AnnealingCheckpoint}.
+     *
+     * @param colorGenerator     The random color generator.
+     * @param random             The random number generator.
+     * @param schedule           The annealing schedule.
+     * @param checkpointer       The checkpointer, or <tt>null</tt> to disable checkpoints.
+     * @param checkpointInterval The number of iterations between checkpoints.
+     */
+    public SimulatedAnnealingGenerator(RandomRGB colorGenerator, Random random, AnnealingSchedule schedule,
+                                       Checkpointer checkpointer, int checkpointInterval) {
+        if (checkpointer != null) {
+            if (checkpointInterval < 1)
+                throw new IllegalArgumentException(String.format("Checkpoint interval should be positive, was: %d",
+                        checkpointInterval));
+            if (!(colorGenerator instanceof Serializable))
+                throw new IllegalArgumentException(String.format("Color generator is not serializable: %s",
+                        colorGenerator.getClass().getName()));
+
+            // Fail now, rather than when a checkpoint is resumed.
+            AnnealingCheckpoint.checkGenerators(random, colorGenerator);
+        }
+
         this.colorGenerator = colorGenerator;
         this.random = random;
+        this.schedule = schedule;
+        this.checkpointer = checkpointer;
+        this.checkpointInterval = checkpointInterval;
     }
 
     /**
@@ -72,7 +140,29 @@ public class SimulatedAnnealingGenerator implements ColorSetGenerator {
         if (n == 1)
             return new HashSet<>(colors);
 
-        refineColors(colors);
+        refineColors(colors, 0, schedule.initialTemperature(), 0., 0, random, colorGenerator);
+
+        return new HashSet<>(colors);
+    }
+
+    /**
+     * Resume generation of a color set from a checkpoint. The random number generators are
+     * restored from the checkpoint, so the resulting color set is the same as that of the
+     * uninterrupted run, provided that this generator has the same schedule as the generator
+     * that stored the checkpoint.
+     *
+     * @param checkpoint The checkpoint.
+     * @return A set of distinct colors.
+     * @throws IllegalArgumentException If the checkpoint was stored with different schedule parameters.
+     */
+    public Set<RGB> resume(AnnealingCheckpoint checkpoint) {
+        checkpoint.checkSchedule(schedule);
+
+        List<RGB> colors = checkpoint.getColors();
+        AnnealingCheckpoint.Generators generators = checkpoint.restoreGenerators();
+
+        refineColors(colors, checkpoint.getIteration(), checkpoint.getTemperature(), checkpoint.getBestMinDistance(),
+                checkpoint.getStagnantIterations(), generators.random, generators.colorGenerator);
 
         return new HashSet<>(colors);
     }
@@ -152,6 +242,17 @@ public class SimulatedAnnealingGenerator implements ColorSetGenerator {
      * @param temperature The temperature.
      */
     public void iteration(List<RGB> rgbs, List<ColorCIELab> labs, int n, int maxN, double temperature) {
+        iteration(random, colorGenerator, rgbs, labs, n, maxN, temperature);
+    }
+
+    /**
+     * Execute a simulated annealing iteration, see
+     * {@link #iteration(java.util.List, java.util.List, int, int, double)}.
+     *
+     * @return The fraction of the considered replacements that was accepted.
+     */
+    private double iteration(Random random, RandomRGB colorGenerator, List<RGB> rgbs, List<ColorCIELab> labs,
+                             int n, int maxN, double temperature) {
         // Get the overall minimum distance.
         final IndexPair minDistancePair = minDistance(labs);
         double distance = minDistancePair.getDistance();
@@ -169,21 +270,24 @@ public class SimulatedAnnealingGenerator implements ColorSetGenerator {
         // The number of color changes that were accepted in this iteration.
         int accepted = 0;
 
+        final int maxReplacements = schedule.maxReplacements();
+
         // Stopping conditions:
         //
-        // - MAX_REPLACEMENTS replacements are considered.
-        // - 10% of the replacements have been accepted.
+        // - The maximum number of replacements are considered.
+        // - 10% of the maximum number of replacements have been accepted.
         //
-        for (int i = 0; i < MAX_REPLACEMENTS && accepted < MAX_REPLACEMENTS / 10; i++) {
+        int i;
+        for (i = 0; i < maxReplacements && accepted < maxReplacements / 10; i++) {
             // Two rules can be used for selecting a new color:
             //
             // 1. Pick a random color in the RGB space.
-            // 2. Pick a color from the 5x5x5 box centered around the current color.
+            // 2. Pick a color from the box centered around the current color.
             RGB newRGB;
             if (random.nextDouble() <= pRule1)
                 newRGB = colorGenerator.next();
             else
-                newRGB = colorGenerator.nextWithinBox(rgbs.get(tuneIdx), 2);
+                newRGB = colorGenerator.nextWithinBox(rgbs.get(tuneIdx), schedule.boxRadius());
 
             ColorCIELab newLab = rgbToCIELab(newRGB);
 
@@ -210,30 +314,66 @@ public class SimulatedAnnealingGenerator implements ColorSetGenerator {
 
         rgbs.set(tuneIdx, replacementRGB);
         labs.set(tuneIdx, replacementLab);
-    }
 
-    private List<RGB> refineColors(List<RGB> colors) {
-        double temperature = INITIAL_TEMPERATURE;
+        return (double) accepted / i;
+    }
 
+    private List<RGB> refineColors(List<RGB> colors, int startIteration, double temperature, double bestMinDistance,
+                                   int stagnantIterations, Random random, RandomRGB colorGenerator) {
         List<ColorCIELab> labs = new ArrayList<>(colors.size());
         for (RGB rgb : colors)
             labs.add(rgbToCIELab(rgb));
 
-        for (int i = 0; i < N_ITERATIONS; ++i) {
+        final int maxIterations = schedule.maxIterations();
+
+        for (int i = startIteration; i < maxIterations; ++i) {
 
             double distanceBefore = totalDistance(labs);
 
-            iteration(colors, labs, i, N_ITERATIONS, temperature);
-            iteration(colors, labs, i, N_ITERATIONS, temperature);
+            double acceptanceRatio = (iteration(random, colorGenerator, colors, labs, i, maxIterations, temperature) +
+                    iteration(random, colorGenerator, colors, labs, i, maxIterations, temperature)) / 2.;
+
+            // Track stagnation of the minimum distance, used by the stopping rule of the schedule.
+            double minDistance = minDistance(labs).getDistance();
+            if (minDistance > bestMinDistance + schedule.minImprovement()) {
+                bestMinDistance = minDistance;
+                stagnantIterations = 0;
+            } else
+                ++stagnantIterations;
+
+            AnnealingProgress progress = new AnnealingProgress(i + 1, temperature, acceptanceRatio, minDistance,
+                    bestMinDistance, stagnantIterations);
 
-            temperature *= 0.9;
+            temperature = schedule.nextTemperature(progress);
 
             LOGGER.info("Iteration {}: {} -> {}", i, distanceBefore, totalDistance(labs));
+
+            if (schedule.converged(progress)) {
+                LOGGER.info("Converged after {} iterations, minimum distance: {}", i + 1, bestMinDistance);
+                break;
+            }
+
+            if (checkpointer != null && (i + 1) % checkpointInterval == 0)
+                checkpoint(new AnnealingCheckpoint(schedule, i + 1, temperature, bestMinDistance, stagnantIterations,
+                        colors, random, colorGenerator));
         }
 
         return colors;
     }
 
+    /**
+     * Store a checkpoint. Failure to store a checkpoint is logged, but does not abort the run.
+     *
+     * @param checkpoint The checkpoint.
+     */
+    private void checkpoint(AnnealingCheckpoint checkpoint) {
+        try {
+            checkpointer.checkpoint(checkpoint);
+        } catch (IOException e) {
+            LOGGER.warn("Could not store checkpoint after iteration {}", checkpoint.getIteration(), e);
+        }
+    }
+
     /**
      * Eucledian distance between to CIE Lab colors.
      *
@@ -0,0 +1,476 @@
+package eu.danieldk.quzah.palette;
+
+import eu.danieldk.quzah.colorspace.RGB;
+import eu.danieldk.quzah.pregen.PregeneratedColors;
+import eu.danieldk.quzah.random.RandomRGB;
+import eu.danieldk.quzah.random.UniformRandomRGB;
+import org.apache.sanselan.color.ColorCIELab;
+import org.apache.sanselan.color.ColorConversions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class assigns colors to category keys. The first key that is seen gets the first color
+ * of the palette, the second key the second color, etc. Once a key is assigned a color, the
+ * assignment never changes.
+ * <p/>
+ * Lookups of keys that were already assigned are wait-free: they probe an open-addressing table
+ * that is only extended in a way that is safe for concurrent readers. Assignment of new keys is
+ * serialized.
+ * <p/>
+ * The palette is taken from lists of color sets, such as those in {@link PregeneratedColors}:
+ * the <i>n<sup>th</sup></i> member should contain <i>n</i> distinct colors. When the palette
+ * runs out, it is extended to twice its size with the colors of the larger set that are most
+ * distinct from the colors that are already in use. Once the largest set is exhausted, every new
+ * key gets the most distinct color of a small sample of random colors. So, every key gets a
+ * different color, though keys that are added after the largest set is exhausted get colors that
+ * are less distinct.
+ *
+ * @param <K> The key type.
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class PaletteAssigner<K> {
+    /**
+     * The default number of colors of the initial palette.
+     */
+    public static final int DEFAULT_INITIAL_SIZE = 8;
+
+    // The minimum capacity of the hash table.
+    private static final int MIN_CAPACITY = 16;
+
+    // The number of random candidates per color when extending past the largest color set.
+    private static final int CANDIDATES_PER_COLOR = 16;
+
+    // Seed of the default random color generator, so that extended palettes are reproducible.
+    private static final long EXTENSION_SEED = 42;
+
+    private final List<List<RGB>> colorSets;
+
+    // Generator for candidate colors when the largest color set is exhausted. Guarded by lock.
+    private final RandomRGB extensionColors;
+
+    private final Object lock = new Object();
+
+    private volatile Table table;
+
+    private volatile int size;
+
+    // The palette, in assignment order. Guarded by lock.
+    private int[] palette;
+
+    // The number of colors in the palette. Guarded by lock.
+    private int paletteSize;
+
+    // The palette colors in CIE Lab. Guarded by lock.
+    private final LabIndex paletteLabs = new LabIndex();
+
+    // The size of the largest color set that the palette was extended with. Guarded by lock.
+    private int colorSetSize;
+
+    /**
+     * Create a {@link PaletteAssigner} using the {@link PregeneratedColors#UNIFORM} color sets
+     * and an initial palette of {@link #DEFAULT_INITIAL_SIZE} colors.
+     */
+    public PaletteAssigner() {
+        this(PregeneratedColors.UNIFORM);
+    }
+
+    /**
+     * Create a {@link PaletteAssigner} using an initial palette of {@link #DEFAULT_INITIAL_SIZE}
+     * colors, or the largest set if the color sets are smaller.
+     *
+     * @param colorSets The color sets, the <i>n<sup>th</sup></i> member contains <i>n</i> colors.
+     */
+    public PaletteAssigner(List<List<RGB>> colorSets) {
+        this(colorSets, Math.min(DEFAULT_INITIAL_SIZE, colorSets.size()));
+    }
+
+    /**
+     * Create a {@link PaletteAssigner}.
+     *
+     * @param colorSets   The color sets, the <i>n<sup>th</sup></i> member contains <i>n</i> colors.
+     * @param initialSize The number of colors in the initial palette.
+     */
+    public PaletteAssigner(List<List<RGB>> colorSets, int initialSize) {
+        this(colorSets, initialSize, new UniformRandomRGB(new Random(EXTENSION_SEED)));
+    }
+
+    /**
+     * Create a {@link PaletteAssigner} that uses a random color generator to extend the palette
+     * past the largest color set. The generator should pick colors from the same part of the RGB
+     * space as the color sets, e.g. a {@link eu.danieldk.quzah.random.PastelRandomRGB} for
+     * {@link PregeneratedColors#PASTEL}.
+     *
+     * @param colorSets       The color sets, the <i>n<sup>th</sup></i> member contains <i>n</i> colors.
+     * @param initialSize     The number of colors in the initial palette.
+     * @param extensionColors The generator of candidate colors for extending the palette.
+     */
+    public PaletteAssigner(List<List<RGB>> colorSets, int initialSize, RandomRGB extensionColors) {
+        if (initialSize < 1 || initialSize > colorSets.size())
+            throw new IllegalArgumentException(String.format("Initial size should be in [1, %d], was: %d",
+                    colorSets.size(), initialSize));
+
+        this.colorSets = colorSets;
+        this.extensionColors = extensionColors;
+
+        List<RGB> initial = colorSets.get(initialSize - 1);
+        colorSetSize = initialSize;
+        palette = new int[initial.size()];
+        for (RGB rgb : initial)
+            addColor(rgb.getRGB(), rgbToCIELab(rgb.getRGB()));
+
+        table = new Table(MIN_CAPACITY);
+    }
+
+    /**
+     * Get the color of a key, assigning a new color if the key was not seen before.
+     *
+     * @param key The key.
+     * @return The color.
+     */
+    public RGB color(K key) {
+        return new RGB(rgb(key));
+    }
+
+    /**
+     * Get the color of a key as a packed ARGB value, assigning a new color if the key was not
+     * seen before. This method does not allocate for keys that were seen before.
+     *
+     * @param key The key.
+     * @return The packed ARGB color.
+     */
+    public int rgb(K key) {
+        if (key == null)
+            throw new NullPointerException("Key cannot be null");
+
+        Table t = table;
+        int slot = t.find(key);
+        if (slot >= 0)
+            return t.colors[slot];
+
+        return assign(key);
+    }
+
+    /**
+     * Get the number of keys that were assigned a color.
+     *
+     * @return The number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int assign(K key) {
+        synchronized (lock) {
+            // Another thread may have assigned the key in the meanwhile.
+            Table t = table;
+            int slot = t.find(key);
+            if (slot >= 0)
+                return t.colors[slot];
+
+            int color = nextColor();
+
+            // Keep the load factor at or below 0.5, so that probe sequences stay short.
+            if ((size + 1) * 2 > t.capacity()) {
+                Table grown = t.grow();
+                grown.insert(key, color);
+                table = grown;
+            } else
+                t.insert(key, color);
+
+            ++size;
+
+            return color;
+        }
+    }
+
+    private int nextColor() {
+        // Extending can add fewer colors than requested when candidates are duplicates.
+        while (size == paletteSize) {
+            if (colorSetSize < colorSets.size())
+                extendFromColorSet();
+            else
+                addRandomColor();
+        }
+
+        return palette[size];
+    }
+
+    /**
+     * Extend the palette to (at most) twice its size, using the colors from a larger color
+     * set that are most distinct from the colors in the palette.
+     */
+    private void extendFromColorSet() {
+        colorSetSize = Math.min(colorSets.size(), colorSetSize * 2);
+        List<RGB> candidates = colorSets.get(colorSetSize - 1);
+        int newSize = Math.max(paletteSize, colorSetSize);
+
+        List<ColorCIELab> candidateLabs = new ArrayList<>(candidates.size());
+        double[] minDistances = new double[candidates.size()];
+        for (int i = 0; i < candidates.size(); ++i) {
+            ColorCIELab lab = rgbToCIELab(candidates.get(i).getRGB());
+            candidateLabs.add(lab);
+            minDistances[i] = paletteLabs.nearestSquaredDistance(lab);
+        }
+
+        // Greedily add the candidate that is farthest from the colors that are in the palette.
+        while (paletteSize < newSize) {
+            int best = -1;
+            for (int i = 0; i < minDistances.length; ++i)
+                if (minDistances[i] > 0. && (best == -1 || minDistances[i] > minDistances[best]))
+                    best = i;
+
+            // All remaining candidates are already in the palette.
+            if (best == -1)
+                break;
+
+            ColorCIELab bestLab = candidateLabs.get(best);
+            addColor(candidates.get(best).getRGB(), bestLab);
+
+            for (int i = 0; i < minDistances.length; ++i)
+                minDistances[i] = Math.min(minDistances[i], squaredDistance(candidateLabs.get(i), bestLab));
+        }
+    }
+
+    /**
+     * Add the random candidate color that is most distinct from the colors in the palette. The
+     * number of candidates is constant and distances are found using a lattice, so that adding
+     * a color takes (amortized) constant time.
+     */
+    private void addRandomColor() {
+        int best = 0;
+        ColorCIELab bestLab = null;
+        double bestDistance = 0.;
+        for (int i = 0; i < CANDIDATES_PER_COLOR; ++i) {
+            int candidate = extensionColors.next().getRGB();
+            ColorCIELab lab = rgbToCIELab(candidate);
+            double distance = paletteLabs.nearestSquaredDistance(lab);
+            if (distance > bestDistance) {
+                best = candidate;
+                bestLab = lab;
+                bestDistance = distance;
+            }
+        }
+
+        if (bestLab == null)
+            throw new IllegalStateException("Could not find colors that are not in the palette yet");
+
+        addColor(best, bestLab);
+    }
+
+    private void addColor(int rgb, ColorCIELab lab) {
+        if (paletteSize == palette.length)
+            palette = Arrays.copyOf(palette, palette.length * 2);
+
+        palette[paletteSize++] = rgb;
+        paletteLabs.add(lab);
+    }
+
+    private static double squaredDistance(ColorCIELab lab1, ColorCIELab lab2) {
+        double dl = lab1.L - lab2.L;
+        double da = lab1.a - lab2.a;
+        double db = lab1.b - lab2.b;
+        return dl * dl + da * da + db * db;
+    }
+
+    private static ColorCIELab rgbToCIELab(int rgb) {
+        return ColorConversions.convertXYZtoCIELab(ColorConversions.convertRGBtoXYZ(rgb));
+    }
+
+    /**
+     * Colors in CIE Lab, bucketed in a lattice of cubic cells to find the nearest color without
+     * scanning all colors. Colors outside the lattice are stored in its border cells. The cells
+     * are made smaller as the number of colors grows, so that cells contain few colors.
+     */
+    private static class LabIndex {
+        private static final double INITIAL_CELL_SIZE = 8.;
+
+        private static final double MIN_CELL_SIZE = 2.;
+
+        private static final double MIN_L = 0.;
+
+        private static final double L_RANGE = 104.;
+
+        private static final double MIN_AB = -128.;
+
+        private static final double AB_RANGE = 256.;
+
+        private double cellSize;
+
+        private int lCells;
+
+        private int abCells;
+
+        // The first color of every cell, or -1 for empty cells.
+        private int[] heads;
+
+        // The next color in the cell of every color, or -1 for the last color.
+        private int[] next = new int[16];
+
+        // The colors, three values per color.
+        private double[] labs = new double[next.length * 3];
+
+        private int size;
+
+        private LabIndex() {
+            rebuild(INITIAL_CELL_SIZE);
+        }
+
+        private void add(ColorCIELab lab) {
+            if (size == next.length) {
+                next = Arrays.copyOf(next, size * 2);
+                labs = Arrays.copyOf(labs, size * 6);
+            }
+
+            labs[size * 3] = lab.L;
+            labs[size * 3 + 1] = lab.a;
+            labs[size * 3 + 2] = lab.b;
+            ++size;
+
+            // Only a fraction of the lattice lies within the RGB gamut, so this keeps the number
+            // of colors per occupied cell small.
+            if (size > heads.length / 2 && cellSize > MIN_CELL_SIZE)
+                rebuild(cellSize / 2);
+            else
+                link(size - 1);
+        }
+
+        /**
+         * Get the squared distance to the nearest color.
+         *
+         * @param lab The color to find the nearest color for.
+         * @return The squared distance, or {@link Double#MAX_VALUE} if the index is empty.
+         */
+        private double nearestSquaredDistance(ColorCIELab lab) {
+            int l = cell(lab.L, MIN_L, lCells);
+            int a = cell(lab.a, MIN_AB, abCells);
+            int b = cell(lab.b, MIN_AB, abCells);
+
+            // Search shells of cells around the cell of the color. Colors outside shell r are at
+            // least r cells away along some axis, so at least r * cellSize away.
+            double best = Double.MAX_VALUE;
+            for (int r = 0; r < Math.max(lCells, abCells); ++r) {
+                for (int li = Math.max(0, l - r); li <= Math.min(lCells - 1, l + r); ++li)
+                    for (int ai = Math.max(0, a - r); ai <= Math.min(abCells - 1, a + r); ++ai) {
+                        // Inside the shell, only the cells on its faces along b are new.
+                        int step = Math.abs(li - l) == r || Math.abs(ai - a) == r ? 1 : Math.max(1, 2 * r);
+                        for (int bi = b - r; bi <= b + r; bi += step)
+                            if (bi >= 0 && bi < abCells)
+                                best = nearestInCell((li * abCells + ai) * abCells + bi, lab, best);
+                    }
+
+                double bound = r * cellSize;
+                if (best <= bound * bound)
+                    break;
+            }
+
+            return best;
+        }
+
+        private double nearestInCell(int cell, ColorCIELab lab, double best) {
+            for (int i = heads[cell]; i != -1; i = next[i]) {
+                double dl = lab.L - labs[i * 3];
+                double da = lab.a - labs[i * 3 + 1];
+                double db = lab.b - labs[i * 3 + 2];
+                best = Math.min(best, dl * dl + da * da + db * db);
+            }
+
+            return best;
+        }
+
+        private void rebuild(double cellSize) {
+            this.cellSize = cellSize;
+            lCells = (int) Math.ceil(L_RANGE / cellSize);
+            abCells = (int) Math.ceil(AB_RANGE / cellSize);
+
+            heads = new int[lCells * abCells * abCells];
+            Arrays.fill(heads, -1);
+
+            for (int i = 0; i < size; ++i)
+                link(i);
+        }
+
+        private void link(int i) {
+            int cell = (cell(labs[i * 3], MIN_L, lCells) * abCells + cell(labs[i * 3 + 1], MIN_AB, abCells)) *
+                    abCells + cell(labs[i * 3 + 2], MIN_AB, abCells);
+            next[i] = heads[cell];
+            heads[cell] = i;
+        }
+
+        private int cell(double value, double min, int nCells) {
+            return Math.max(0, Math.min(nCells - 1, (int) Math.floor((value - min) / cellSize)));
+        }
+    }
+
+    /**
+     * Open-addressing hash table with linear probing. Readers see a consistent table without
+     * locking: the color of a slot is written before its key is published, and a table is never
+     * modified after it is replaced by a larger table.
+     */
+    private static class Table {
+        private final AtomicReferenceArray<Object> keys;
+
+        private final int[] colors;
+
+        private final int mask;
+
+        private Table(int capacity) {
+            keys = new AtomicReferenceArray<>(capacity);
+            colors = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return colors.length;
+        }
+
+        /**
+         * Find the slot of a key.
+         *
+         * @param key The key.
+         * @return The slot, or <tt>-1</tt> if the key is not in the table.
+         */
+        private int find(Object key) {
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                Object slotKey = keys.get(slot);
+                if (slotKey == null)
+                    return -1;
+                if (slotKey.equals(key))
+                    return slot;
+            }
+        }
+
+        /**
+         * Insert a key that is not in the table yet. Must only be called by one thread at a time.
+         */
+        private void insert(Object key, int color) {
+            int slot = hash(key) & mask;
+            while (keys.get(slot) != null)
+                slot = (slot + 1) & mask;
+
+            colors[slot] = color;
+            keys.set(slot, key);
+        }
+
+        private Table grow() {
+            Table grown = new Table(capacity() * 2);
+
+            for (int slot = 0; slot < capacity(); ++slot) {
+                Object key = keys.get(slot);
+                if (key != null)
+                    grown.insert(key, colors[slot]);
+            }
+
+            return grown;
+        }
+
+        private static int hash(Object key) {
+            int h = key.hashCode() * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
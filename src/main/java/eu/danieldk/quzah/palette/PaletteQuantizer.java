@@ -0,0 +1,475 @@
+package eu.danieldk.quzah.palette;
+
+import eu.danieldk.quzah.colorspace.RGB;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class maps arbitrary colors to the perceptually nearest color of a palette, using the
+ * Eucledian distance in the CIE Lab color space.
+ * <p/>
+ * To avoid a scan of the palette for every pixel, the RGB cube is divided in a lattice of
+ * <tt>2^bits</tt> cells per dimension. For every cell, we precompute which palette colors can
+ * be the nearest color of a color in the cell, using a bounding box of the cell in CIE Lab.
+ * Cells with more than one such candidate (ambiguous cells) are recursively divided in eight
+ * subcells, down to single colors if necessary, until every subcell has one candidate. Only the
+ * candidates of a cell are considered for its subcells. So, a lookup only consists of table
+ * accesses.
+ * <p/>
+ * Instances are immutable and can be shared between threads. The bulk methods do not allocate
+ * per pixel.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class PaletteQuantizer {
+    /**
+     * The default number of bits per channel that are used for the lattice (64 cells per dimension).
+     */
+    public static final int DEFAULT_BITS = 6;
+
+    /**
+     * The maximum number of bits per channel that can be used for the lattice.
+     */
+    public static final int MAX_BITS = 7;
+
+    // Tolerance for rounding errors in the candidate bound.
+    private static final double ROUNDING_TOLERANCE = 1e-9;
+
+    // Pixel buffers are split in chunks of this size for parallel processing.
+    private static final int PARALLEL_CHUNK_SIZE = 1 << 14;
+
+    // Linearized sRGB components, scaled to [0, 100].
+    private static final double[] LINEAR = new double[256];
+
+    static {
+        for (int i = 0; i < LINEAR.length; ++i)
+            LINEAR[i] = linearize(i);
+    }
+
+    private final int[] palette;
+
+    // The palette colors in CIE Lab, three values per color.
+    private final double[] paletteLabs;
+
+    private final int bits;
+
+    private final int shift;
+
+    // A value >= 0 is the palette index of the cell, a value < 0 is the bitwise complement
+    // of the offset of the cell's subcells in subcells.
+    private final int[] cells;
+
+    // The entries of the subcells of ambiguous cells, eight per cell, encoded in the same manner
+    // as cells. The subcells are ordered by the next bit of the R, G, and B components.
+    private final int[] subcells;
+
+    /**
+     * Create a quantizer for a palette, using a lattice with {@link #DEFAULT_BITS} bits per channel.
+     *
+     * @param palette The palette.
+     */
+    public PaletteQuantizer(List<RGB> palette) {
+        this(palette, DEFAULT_BITS);
+    }
+
+    /**
+     * Create a quantizer for a palette. More bits per channel result in fewer ambiguous cells and
+     * shorter lookups, at the cost of memory (at least <tt>4 * 2^(3 * bits)</tt> bytes) and
+     * precomputation time.
+     *
+     * @param palette The palette.
+     * @param bits    The number of bits per channel used for the lattice, in [1, {@link #MAX_BITS}].
+     */
+    public PaletteQuantizer(List<RGB> palette, int bits) {
+        if (palette.isEmpty())
+            throw new IllegalArgumentException("Palette should contain at least one color");
+        if (bits < 1 || bits > MAX_BITS)
+            throw new IllegalArgumentException(String.format("Bits should be in [1, %d], was: %d", MAX_BITS, bits));
+
+        this.bits = bits;
+        this.shift = 8 - bits;
+
+        this.palette = new int[palette.size()];
+        this.paletteLabs = new double[palette.size() * 3];
+        for (int i = 0; i < palette.size(); ++i) {
+            RGB rgb = palette.get(i);
+            this.palette[i] = rgb.getRGB();
+            rgbToLab(LINEAR[rgb.r], LINEAR[rgb.g], LINEAR[rgb.b], paletteLabs, i * 3);
+        }
+
+        this.cells = new int[1 << (3 * bits)];
+
+        SubcellBuilder subcellBuilder = new SubcellBuilder();
+        computeCells(subcellBuilder);
+        this.subcells = subcellBuilder.build();
+    }
+
+    /**
+     * Get the palette index of the color that is nearest to a color.
+     *
+     * @param argb The packed ARGB color, the alpha component is ignored.
+     * @return The palette index.
+     */
+    public int index(int argb) {
+        int r = (argb >>> 16) & 0xff;
+        int g = (argb >>> 8) & 0xff;
+        int b = argb & 0xff;
+
+        int cell = cells[((r >>> shift) << (2 * bits)) | ((g >>> shift) << bits) | (b >>> shift)];
+
+        // Descend into the subcells of ambiguous cells.
+        for (int bit = shift - 1; cell < 0; --bit)
+            cell = subcells[~cell + ((((r >>> bit) & 1) << 2) | (((g >>> bit) & 1) << 1) | ((b >>> bit) & 1))];
+
+        return cell;
+    }
+
+    /**
+     * Get the palette color that is nearest to a color. The alpha component of the color is
+     * retained.
+     *
+     * @param argb The packed ARGB color.
+     * @return The packed ARGB palette color.
+     */
+    public int nearest(int argb) {
+        return (argb & 0xff000000) | (palette[index(argb)] & 0x00ffffff);
+    }
+
+    /**
+     * Map the pixels of a buffer to palette indices.
+     *
+     * @param pixels  The packed ARGB pixels.
+     * @param indices The buffer to store the palette indices in, at least as large as <tt>pixels</tt>.
+     */
+    public void indices(int[] pixels, int[] indices) {
+        checkBuffers(pixels, indices);
+        indices(pixels, indices, 0, pixels.length);
+    }
+
+    /**
+     * Map the pixels of a buffer to palette indices, in parallel.
+     *
+     * @param pixels  The packed ARGB pixels.
+     * @param indices The buffer to store the palette indices in, at least as large as <tt>pixels</tt>.
+     * @param pool    The pool that is used to process the buffer.
+     */
+    public void indices(int[] pixels, int[] indices, ForkJoinPool pool) {
+        checkBuffers(pixels, indices);
+        pool.invoke(new MapAction(pixels, indices, 0, pixels.length, false));
+    }
+
+    /**
+     * Replace the pixels of a buffer by the nearest palette colors. The alpha components of the
+     * pixels are retained. <tt>pixels</tt> and <tt>recolored</tt> can be the same buffer.
+     *
+     * @param pixels    The packed ARGB pixels.
+     * @param recolored The buffer to store the palette colors in, at least as large as <tt>pixels</tt>.
+     */
+    public void recolor(int[] pixels, int[] recolored) {
+        checkBuffers(pixels, recolored);
+        recolor(pixels, recolored, 0, pixels.length);
+    }
+
+    /**
+     * Replace the pixels of a buffer by the nearest palette colors, in parallel. The alpha components
+     * of the pixels are retained. <tt>pixels</tt> and <tt>recolored</tt> can be the same buffer.
+     *
+     * @param pixels    The packed ARGB pixels.
+     * @param recolored The buffer to store the palette colors in, at least as large as <tt>pixels</tt>.
+     * @param pool      The pool that is used to process the buffer.
+     */
+    public void recolor(int[] pixels, int[] recolored, ForkJoinPool pool) {
+        checkBuffers(pixels, recolored);
+        pool.invoke(new MapAction(pixels, recolored, 0, pixels.length, true));
+    }
+
+    /**
+     * Get the fraction of lattice cells that contain colors with different nearest palette colors.
+     * These cells are divided in subcells.
+     *
+     * @return The fraction of ambiguous cells.
+     */
+    public double ambiguousFraction() {
+        int ambiguous = 0;
+        for (int cell : cells)
+            if (cell < 0)
+                ++ambiguous;
+
+        return (double) ambiguous / cells.length;
+    }
+
+    private void indices(int[] pixels, int[] indices, int from, int to) {
+        for (int i = from; i < to; ++i)
+            indices[i] = index(pixels[i]);
+    }
+
+    private void recolor(int[] pixels, int[] recolored, int from, int to) {
+        for (int i = from; i < to; ++i)
+            recolored[i] = nearest(pixels[i]);
+    }
+
+    private static void checkBuffers(int[] pixels, int[] target) {
+        if (target.length < pixels.length)
+            throw new IllegalArgumentException(String.format("Target buffer is smaller than the pixel buffer: %d < %d",
+                    target.length, pixels.length));
+    }
+
+    private void computeCells(SubcellBuilder subcellBuilder) {
+        // Per level of subdivision: the candidates of a cell and their distances to the cell.
+        int[][] candidates = new int[shift + 1][palette.length];
+        double[][] minDistances = new double[shift + 1][palette.length];
+        double[] box = new double[6];
+
+        int[] all = new int[palette.length];
+        for (int i = 0; i < all.length; ++i)
+            all[i] = i;
+
+        int nCells = 1 << bits;
+        for (int r = 0; r < nCells; ++r)
+            for (int g = 0; g < nCells; ++g)
+                for (int b = 0; b < nCells; ++b)
+                    cells[(r << (2 * bits)) | (g << bits) | b] = cellEntry(r << shift, g << shift, b << shift, shift,
+                            all, all.length, candidates, minDistances, box, subcellBuilder);
+    }
+
+    /**
+     * Compute the entry of a cell: the palette index of its nearest color if there is only one
+     * candidate, otherwise a reference to its subcells.
+     *
+     * @param rMin             The lowest R component of the cell.
+     * @param gMin             The lowest G component of the cell.
+     * @param bMin             The lowest B component of the cell.
+     * @param level            The cell size as a power of two.
+     * @param parentCandidates The candidates of the enclosing cell, in increasing order.
+     * @param nParent          The number of candidates of the enclosing cell.
+     */
+    private int cellEntry(int rMin, int gMin, int bMin, int level, int[] parentCandidates, int nParent,
+                          int[][] candidates, double[][] minDistances, double[] box,
+                          SubcellBuilder subcellBuilder) {
+        int cellSize = 1 << level;
+        labBoundingBox(rMin, gMin, bMin, rMin + cellSize - 1, gMin + cellSize - 1, bMin + cellSize - 1, box);
+
+        // Every color of the cell lies within the bounding box. So, a palette color can only be
+        // nearest to a color in the cell if its smallest (squared) distance to the box does not
+        // exceed the largest distance to the box of some other palette color.
+        double[] distances = minDistances[level];
+        double bound = Double.MAX_VALUE;
+        for (int i = 0; i < nParent; ++i) {
+            distances[i] = boxDistance(box, paletteLabs, parentCandidates[i] * 3, false);
+            bound = Math.min(bound, boxDistance(box, paletteLabs, parentCandidates[i] * 3, true));
+        }
+        bound += ROUNDING_TOLERANCE;
+
+        int[] cellCandidates = candidates[level];
+        int nCandidates = 0;
+        for (int i = 0; i < nParent; ++i)
+            if (distances[i] <= bound)
+                cellCandidates[nCandidates++] = parentCandidates[i];
+
+        if (nCandidates == 1)
+            return cellCandidates[0];
+
+        // A single color, the box is a point. Pick the nearest candidate, the first on ties.
+        if (level == 0) {
+            int best = -1;
+            double bestDistance = Double.MAX_VALUE;
+            for (int i = 0; i < nParent; ++i)
+                if (distances[i] < bestDistance) {
+                    bestDistance = distances[i];
+                    best = parentCandidates[i];
+                }
+
+            return best;
+        }
+
+        int offset = subcellBuilder.reserve();
+        int half = cellSize >>> 1;
+        boolean uniform = true;
+        for (int i = 0; i < 8; ++i) {
+            int entry = cellEntry(rMin + ((i >>> 2) & 1) * half, gMin + ((i >>> 1) & 1) * half,
+                    bMin + (i & 1) * half, level - 1, cellCandidates, nCandidates, candidates, minDistances, box,
+                    subcellBuilder);
+            subcellBuilder.set(offset + i, entry);
+            uniform &= entry >= 0 && entry == subcellBuilder.get(offset);
+        }
+
+        // The bound is conservative, all subcells can have the same nearest color. Since the
+        // subcells are not subdivided, their entries are the last entries and can be released.
+        if (uniform) {
+            subcellBuilder.release(offset);
+            return subcellBuilder.get(offset);
+        }
+
+        return ~offset;
+    }
+
+    /**
+     * Compute the CIE Lab bounding box of an RGB cell. X, Y, and Z increase monotonically with
+     * every RGB component, and L, a, and b are (differences of) monotonic functions of X, Y, and Z.
+     * So, the extremes of L, a, and b follow from the XYZ values of the lowest and highest corner
+     * of the cell.
+     *
+     * @param box Array in which the minimum L, a, b and the maximum L, a, b are stored.
+     */
+    private static void labBoundingBox(int rMin, int gMin, int bMin, int rMax, int gMax, int bMax, double[] box) {
+        labFunctions(LINEAR[rMin], LINEAR[gMin], LINEAR[bMin], box, 0);
+        if (rMin == rMax && gMin == gMax && bMin == bMax)
+            System.arraycopy(box, 0, box, 3, 3);
+        else
+            labFunctions(LINEAR[rMax], LINEAR[gMax], LINEAR[bMax], box, 3);
+
+        double fxMin = box[0], fyMin = box[1], fzMin = box[2];
+        double fxMax = box[3], fyMax = box[4], fzMax = box[5];
+
+        box[0] = 116. * fyMin - 16.;
+        box[1] = 500. * (fxMin - fyMax);
+        box[2] = 200. * (fyMin - fzMax);
+        box[3] = 116. * fyMax - 16.;
+        box[4] = 500. * (fxMax - fyMin);
+        box[5] = 200. * (fyMax - fzMin);
+    }
+
+    /**
+     * Compute the smallest or largest squared distance between a Lab color and a bounding box.
+     */
+    private static double boxDistance(double[] box, double[] labs, int idx, boolean largest) {
+        double sum = 0.;
+        for (int d = 0; d < 3; ++d) {
+            double toMin = labs[idx + d] - box[d];
+            double toMax = box[d + 3] - labs[idx + d];
+
+            double distance;
+            if (largest)
+                distance = Math.max(Math.abs(toMin), Math.abs(toMax));
+            else
+                distance = Math.max(0., Math.max(-toMin, -toMax));
+
+            sum += distance * distance;
+        }
+
+        return sum;
+    }
+
+    /**
+     * Convert linearized RGB to CIE Lab.
+     */
+    private static void rgbToLab(double r, double g, double b, double[] lab, int idx) {
+        labFunctions(r, g, b, lab, idx);
+
+        double fx = lab[idx];
+        double fy = lab[idx + 1];
+        double fz = lab[idx + 2];
+
+        lab[idx] = 116. * fy - 16.;
+        lab[idx + 1] = 500. * (fx - fy);
+        lab[idx + 2] = 200. * (fy - fz);
+    }
+
+    /**
+     * Compute the CIE Lab function of X/Xn, Y/Yn, and Z/Zn of linearized RGB, using the same sRGB
+     * matrix and D65 reference white as {@link org.apache.sanselan.color.ColorConversions}.
+     *
+     * @param f Array in which the function values of X, Y, and Z are stored.
+     */
+    private static void labFunctions(double r, double g, double b, double[] f, int idx) {
+        f[idx] = labF((r * 0.4124 + g * 0.3576 + b * 0.1805) / 95.047);
+        f[idx + 1] = labF((r * 0.2126 + g * 0.7152 + b * 0.0722) / 100.);
+        f[idx + 2] = labF((r * 0.0193 + g * 0.1192 + b * 0.9505) / 108.883);
+    }
+
+    private static double labF(double t) {
+        return t > 0.008856 ? Math.cbrt(t) : 7.787 * t + 16. / 116.;
+    }
+
+    private static double linearize(int component) {
+        double v = component / 255.;
+        v = v > 0.04045 ? Math.pow((v + 0.055) / 1.055, 2.4) : v / 12.92;
+        return v * 100.;
+    }
+
+    /**
+     * Builder for the subcell array.
+     */
+    private static class SubcellBuilder {
+        private int[] subcells = new int[1024];
+
+        private int size;
+
+        /**
+         * Reserve the entries of the eight subcells of a cell.
+         *
+         * @return The offset of the subcells.
+         */
+        private int reserve() {
+            if (size + 8 > subcells.length)
+                subcells = Arrays.copyOf(subcells, subcells.length * 2);
+
+            int offset = size;
+            size += 8;
+
+            return offset;
+        }
+
+        /**
+         * Release the entries from an offset, which must be the offset of the last reserved entries.
+         */
+        private void release(int offset) {
+            size = offset;
+        }
+
+        private int get(int idx) {
+            return subcells[idx];
+        }
+
+        private void set(int idx, int entry) {
+            subcells[idx] = entry;
+        }
+
+        private int[] build() {
+            return Arrays.copyOf(subcells, size);
+        }
+    }
+
+    /**
+     * Fork/join action that maps a range of a pixel buffer.
+     */
+    private class MapAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] pixels;
+
+        private final int[] target;
+
+        private final int from;
+
+        private final int to;
+
+        private final boolean recolor;
+
+        private MapAction(int[] pixels, int[] target, int from, int to, boolean recolor) {
+            this.pixels = pixels;
+            this.target = target;
+            this.from = from;
+            this.to = to;
+            this.recolor = recolor;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK_SIZE) {
+                if (recolor)
+                    recolor(pixels, target, from, to);
+                else
+                    indices(pixels, target, from, to);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new MapAction(pixels, target, from, mid, recolor),
+                    new MapAction(pixels, target, mid, to, recolor));
+        }
+    }
+}
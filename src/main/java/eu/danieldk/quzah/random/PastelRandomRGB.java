@@ -8,6 +8,8 @@ import java.util.Random;
  * @author Daniël de Kok <me@danieldk.eu>
  */
 public class PastelRandomRGB extends UniformRandomRGB {
+    private static final long serialVersionUID = 1L;
+
     private final static int PASTEL_MIN = 128;
     private final static int PASTEL_MAX = 256;
 
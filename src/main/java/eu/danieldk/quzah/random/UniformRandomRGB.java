@@ -2,14 +2,18 @@ package eu.danieldk.quzah.random;
 
 import eu.danieldk.quzah.colorspace.RGB;
 
+import java.io.Serializable;
 import java.util.Random;
 
 /**
- * Pick a random color in the RGB space.
+ * Pick a random color in the RGB space. The generator is serializable, including the state of its
+ * random number generator.
  *
  * @author Daniël de Kok <me@danieldk.eu>
  */
-public class UniformRandomRGB implements RandomRGB {
+public class UniformRandomRGB implements RandomRGB, Serializable {
+    private static final long serialVersionUID = 1L;
+
     public static final int DEFAULT_MIN = 0;
 
     public static final int DEFAULT_MAX = 256;
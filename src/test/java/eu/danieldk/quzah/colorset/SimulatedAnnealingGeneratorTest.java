@@ -0,0 +1,252 @@
+package eu.danieldk.quzah.colorset;
+
+import eu.danieldk.quzah.colorspace.RGB;
+import eu.danieldk.quzah.random.RandomRGB;
+import eu.danieldk.quzah.random.UniformRandomRGB;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link eu.danieldk.quzah.colorset.SimulatedAnnealingGenerator}.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class SimulatedAnnealingGeneratorTest {
+    private static final int N_COLORS = 5;
+
+    private static final int CHECKPOINT_INTERVAL = 25;
+
+    private static final int PATIENCE = 6;
+
+    // Offsets of the temperature and the color array length in the checkpoint format.
+    private static final int TEMPERATURE_OFFSET = 12;
+
+    private static final int COLORS_LENGTH_OFFSET = 52;
+
+    @Test
+    public void colorSetSizeTest() {
+        Assert.assertEquals("Unexpected number of colors", N_COLORS, createGenerator(null).colorSet(N_COLORS).size());
+    }
+
+    @Test
+    public void resumeTest() throws IOException {
+        Set<RGB> uninterrupted = createGenerator(null).colorSet(N_COLORS);
+
+        CollectingCheckpointer checkpointer = new CollectingCheckpointer();
+        Assert.assertEquals("Checkpointing should not change the color set", uninterrupted,
+                createGenerator(checkpointer).colorSet(N_COLORS));
+
+        Assert.assertEquals("Unexpected number of checkpoints", 4, checkpointer.checkpoints.size());
+
+        // Resume in a generator with differently-seeded random number generators.
+        SimulatedAnnealingGenerator generator = new SimulatedAnnealingGenerator(new UniformRandomRGB(new Random(3)),
+                new Random(4));
+        Assert.assertEquals("Resuming from a checkpoint should give the same color set", uninterrupted,
+                generator.resume(roundTrip(checkpointer.checkpoints.get(1))));
+    }
+
+    @Test
+    public void resumeSharedRandomTest() throws IOException {
+        // The color generator and annealer share a random number generator.
+        Random random = new Random(7);
+        CollectingCheckpointer checkpointer = new CollectingCheckpointer();
+        Set<RGB> uninterrupted = new SimulatedAnnealingGenerator(new UniformRandomRGB(random), random, checkpointer,
+                CHECKPOINT_INTERVAL).colorSet(N_COLORS);
+
+        SimulatedAnnealingGenerator generator = new SimulatedAnnealingGenerator(new UniformRandomRGB(new Random(3)),
+                new Random(4));
+        Assert.assertEquals("Resuming with a shared random number generator should give the same color set",
+                uninterrupted, generator.resume(roundTrip(checkpointer.checkpoints.get(0))));
+    }
+
+    @Test
+    public void serializationTest() throws IOException {
+        CollectingCheckpointer checkpointer = new CollectingCheckpointer();
+        createGenerator(checkpointer).colorSet(N_COLORS);
+
+        AnnealingCheckpoint checkpoint = checkpointer.checkpoints.get(0);
+        Assert.assertEquals("Checkpoint should be unchanged after serialization", checkpoint, roundTrip(checkpoint));
+    }
+
+    @Test
+    public void stagnationTest() {
+        CollectingCheckpointer checkpointer = new CollectingCheckpointer();
+        AnnealingSchedule schedule = new GeometricSchedule(GeometricSchedule.DEFAULT_INITIAL_TEMPERATURE,
+                GeometricSchedule.DEFAULT_COOLING_FACTOR, PATIENCE);
+        SimulatedAnnealingGenerator generator = new SimulatedAnnealingGenerator(new UniformRandomRGB(new Random(1)),
+                new Random(2), schedule, checkpointer, 1);
+
+        Assert.assertEquals("Unexpected number of colors", N_COLORS, generator.colorSet(N_COLORS).size());
+
+        AnnealingCheckpoint last = checkpointer.checkpoints.get(checkpointer.checkpoints.size() - 1);
+        Assert.assertTrue("Annealing should stop on stagnation", last.getIteration() < schedule.maxIterations() - 1);
+        Assert.assertEquals("Stagnation should be tracked", PATIENCE - 1, last.getStagnantIterations());
+    }
+
+    @Test
+    public void resumeScheduleTest() throws IOException {
+        AnnealingSchedule schedule = new ReheatingSchedule(GeometricSchedule.DEFAULT_INITIAL_TEMPERATURE,
+                GeometricSchedule.DEFAULT_COOLING_FACTOR, PATIENCE / 2, PATIENCE);
+
+        CollectingCheckpointer checkpointer = new CollectingCheckpointer();
+        Set<RGB> uninterrupted = new SimulatedAnnealingGenerator(new UniformRandomRGB(new Random(1)), new Random(2),
+                schedule, checkpointer, 2).colorSet(N_COLORS);
+
+        SimulatedAnnealingGenerator generator = new SimulatedAnnealingGenerator(new UniformRandomRGB(new Random(3)),
+                new Random(4), schedule);
+        for (AnnealingCheckpoint checkpoint : checkpointer.checkpoints)
+            Assert.assertEquals(String.format("Resuming after iteration %d should give the same color set",
+                    checkpoint.getIteration()), uninterrupted, generator.resume(roundTrip(checkpoint)));
+    }
+
+    @Test
+    public void adaptiveScheduleTest() {
+        AnnealingSchedule schedule = new AdaptiveSchedule(1., 0.2, AbstractAnnealingSchedule.NO_PATIENCE);
+
+        Assert.assertTrue("Temperature should decrease when too many replacements are accepted",
+                schedule.nextTemperature(new AnnealingProgress(1, 1., 0.5, 10., 10., 0)) < 1.);
+        Assert.assertTrue("Temperature should increase when too few replacements are accepted",
+                schedule.nextTemperature(new AnnealingProgress(1, 1., 0.1, 10., 10., 0)) > 1.);
+        Assert.assertFalse("Schedule without patience should not converge",
+                schedule.converged(new AnnealingProgress(1, 1., 0.1, 10., 10., 1000)));
+    }
+
+    @Test
+    public void reheatingScheduleTest() {
+        AnnealingSchedule schedule = new ReheatingSchedule(10., 0.9, 5, 20);
+
+        Assert.assertEquals("Temperature should decrease geometrically", 0.9,
+                schedule.nextTemperature(new AnnealingProgress(1, 1., 0.1, 10., 10., 4)), 1e-10);
+        Assert.assertEquals("Temperature should be raised after stagnation", 5.,
+                schedule.nextTemperature(new AnnealingProgress(1, 1., 0.1, 10., 10., 5)), 1e-10);
+        Assert.assertTrue("Schedule should converge after the patience is exhausted",
+                schedule.converged(new AnnealingProgress(1, 1., 0.1, 10., 10., 20)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMinImprovementTest() {
+        new GeometricSchedule(1., 0.9, 100, 25600, 2, 10, Double.NaN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidReheatingPatienceTest() {
+        new ReheatingSchedule(10., 0.9, 5, 5);
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidCheckpointTest() throws IOException {
+        AnnealingCheckpoint.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidLengthTest() throws IOException {
+        List<RGB> colors = Arrays.asList(new RGB(0), new RGB(1));
+        byte[] data = checkpointBytes(new AnnealingCheckpoint(new GeometricSchedule(), 1, 1., 0., 0, colors,
+                new Random(), new UniformRandomRGB()));
+
+        // Corrupt the length of the color array.
+        ByteBuffer.wrap(data).putInt(COLORS_LENGTH_OFFSET, -1);
+
+        AnnealingCheckpoint.read(new ByteArrayInputStream(data));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidTemperatureTest() throws IOException {
+        List<RGB> colors = Arrays.asList(new RGB(0), new RGB(1));
+        byte[] data = checkpointBytes(new AnnealingCheckpoint(new GeometricSchedule(), 1, 1., 0., 0, colors,
+                new Random(), new UniformRandomRGB()));
+
+        ByteBuffer.wrap(data).putDouble(TEMPERATURE_OFFSET, Double.NaN);
+
+        AnnealingCheckpoint.read(new ByteArrayInputStream(data));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void scheduleMismatchTest() throws IOException {
+        CollectingCheckpointer checkpointer = new CollectingCheckpointer();
+        createGenerator(checkpointer).colorSet(N_COLORS);
+
+        AnnealingSchedule schedule = new GeometricSchedule(GeometricSchedule.DEFAULT_INITIAL_TEMPERATURE,
+                GeometricSchedule.DEFAULT_COOLING_FACTOR, GeometricSchedule.DEFAULT_MAX_ITERATIONS * 2,
+                GeometricSchedule.DEFAULT_MAX_REPLACEMENTS, GeometricSchedule.DEFAULT_BOX_RADIUS,
+                GeometricSchedule.NO_PATIENCE, GeometricSchedule.DEFAULT_MIN_IMPROVEMENT);
+        new SimulatedAnnealingGenerator(new UniformRandomRGB(new Random(3)), new Random(4), schedule)
+                .resume(roundTrip(checkpointer.checkpoints.get(0)));
+    }
+
+    @Test(expected = IOException.class)
+    public void disallowedClassTest() throws IOException {
+        List<RGB> colors = Arrays.asList(new RGB(0), new RGB(1));
+        byte[] data = checkpointBytes(new AnnealingCheckpoint(new GeometricSchedule(), 1, 1., 0., 0, colors,
+                new Random(), new ListRandomRGB()));
+
+        AnnealingCheckpoint.read(new ByteArrayInputStream(data));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedRandomTest() {
+        new SimulatedAnnealingGenerator(new UniformRandomRGB(new Random(1)), new SecureRandom(),
+                new CollectingCheckpointer(), CHECKPOINT_INTERVAL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedColorGeneratorTest() {
+        new SimulatedAnnealingGenerator(new ListRandomRGB(), new Random(2), new CollectingCheckpointer(),
+                CHECKPOINT_INTERVAL);
+    }
+
+    private SimulatedAnnealingGenerator createGenerator(Checkpointer checkpointer) {
+        return new SimulatedAnnealingGenerator(new UniformRandomRGB(new Random(1)), new Random(2), checkpointer,
+                CHECKPOINT_INTERVAL);
+    }
+
+    private AnnealingCheckpoint roundTrip(AnnealingCheckpoint checkpoint) throws IOException {
+        return AnnealingCheckpoint.read(new ByteArrayInputStream(checkpointBytes(checkpoint)));
+    }
+
+    private byte[] checkpointBytes(AnnealingCheckpoint checkpoint) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        checkpoint.write(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Color generator with a field of a class that is not allowed in checkpoints.
+     */
+    private static class ListRandomRGB implements RandomRGB, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<RGB> colors = new ArrayList<>();
+
+        @Override
+        public RGB next() {
+            return new RGB(0);
+        }
+
+        @Override
+        public RGB nextWithinBox(RGB rgb, int maxDistance) {
+            return rgb;
+        }
+    }
+
+    private static class CollectingCheckpointer implements Checkpointer {
+        private final List<AnnealingCheckpoint> checkpoints = new ArrayList<>();
+
+        @Override
+        public void checkpoint(AnnealingCheckpoint checkpoint) {
+            checkpoints.add(checkpoint);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package eu.danieldk.quzah.palette;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small program that measures the throughput of {@link PaletteAssigner} under contention, using
+ * 1 to 64 threads. Two workloads are measured: lookups of keys that were assigned before, and
+ * the same lookups mixed with assignments of new keys. As a baseline, the throughput of a
+ * synchronized map that assigns colors in the same manner is also measured. Every configuration
+ * is run once for warm-up before it is measured.
+ * <p/>
+ * This is not a unit test, run it using its main method.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class PaletteAssignerBenchmark {
+    private static final int MAX_THREADS = 64;
+
+    private static final int DEFAULT_KEYS = 1000;
+
+    private static final int DEFAULT_LOOKUPS = 10000000;
+
+    // In the mixed workload, every thread assigns a new key once per this number of operations.
+    private static final int DEFAULT_INSERT_INTERVAL = 10000;
+
+    private static volatile int blackhole;
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length > 3)
+            usage();
+
+        int nKeys = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_KEYS;
+        int nLookups = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_LOOKUPS;
+        int insertInterval = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_INSERT_INTERVAL;
+        if (insertInterval < 1)
+            usage();
+
+        // Box keys in advance, so that boxing is not measured.
+        Integer[] keys = new Integer[nKeys];
+        for (int i = 0; i < nKeys; ++i)
+            keys[i] = i;
+
+        System.out.println(String.format("Mixed workload: one new key per %d operations per thread", insertInterval));
+        System.out.println("threads\tassigner (Mops/s)\tsynchronized map (Mops/s)" +
+                "\tassigner mixed (Mops/s)\tsynchronized map mixed (Mops/s)");
+        for (int nThreads = 1; nThreads <= MAX_THREADS; nThreads *= 2) {
+            double[] results = new double[4];
+            for (int i = 0; i < results.length; ++i) {
+                int interval = i < 2 ? 0 : insertInterval;
+
+                // Warm-up run, to exclude JIT compilation from the measurements.
+                run(createLookup(i), keys, nThreads, nLookups, interval);
+
+                results[i] = run(createLookup(i), keys, nThreads, nLookups, interval);
+            }
+
+            System.out.println(String.format("%d\t%.2f\t%.2f\t%.2f\t%.2f", nThreads, results[0], results[1],
+                    results[2], results[3]));
+        }
+    }
+
+    private static Lookup createLookup(int configuration) {
+        if (configuration % 2 == 0)
+            return new AssignerLookup(new PaletteAssigner<Integer>());
+        else
+            return new SynchronizedMapLookup();
+    }
+
+    /**
+     * Run the benchmark. All keys are assigned before the measurement, every thread then
+     * looks up random keys. If an insert interval is given, every thread also assigns a new
+     * key once per interval operations.
+     *
+     * @return The throughput in millions of operations per second.
+     */
+    private static double run(final Lookup lookup, final Integer[] keys, int nThreads, final int nLookups,
+                              final int insertInterval) throws InterruptedException {
+        for (Integer key : keys)
+            lookup.rgb(key);
+
+        // Box the new keys of every thread in advance. The keys of the threads are disjoint.
+        final Integer[][] newKeys = new Integer[nThreads][];
+        for (int t = 0; t < nThreads; ++t) {
+            newKeys[t] = new Integer[insertInterval == 0 ? 0 : nLookups / insertInterval];
+            for (int i = 0; i < newKeys[t].length; ++i)
+                newKeys[t][i] = keys.length + i * nThreads + t;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(nThreads);
+
+        for (int t = 0; t < nThreads; ++t) {
+            final int seed = t + 1;
+            final Integer[] threadNewKeys = newKeys[t];
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+
+                    // Xorshift, to avoid contention on a shared random number generator.
+                    int x = seed * 0x9e3779b9;
+                    int sink = 0;
+                    int nextInsert = insertInterval;
+                    int nInserted = 0;
+                    for (int i = 0; i < nLookups; ++i) {
+                        if (i + 1 == nextInsert && nInserted < threadNewKeys.length) {
+                            sink += lookup.rgb(threadNewKeys[nInserted++]);
+                            nextInsert += insertInterval;
+                            continue;
+                        }
+
+                        x ^= x << 13;
+                        x ^= x >>> 17;
+                        x ^= x << 5;
+                        sink += lookup.rgb(keys[(x >>> 1) % keys.length]);
+                    }
+
+                    // Publish the result, so that the lookups cannot be eliminated.
+                    blackhole = sink;
+
+                    done.countDown();
+                }
+            });
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - startTime;
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        return ((double) nLookups * nThreads) / (elapsed / 1000.);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: PaletteAssignerBenchmark [keys] [operations-per-thread] [insert-interval]");
+        System.exit(1);
+    }
+
+    private interface Lookup {
+        public int rgb(Integer key);
+    }
+
+    private static class AssignerLookup implements Lookup {
+        private final PaletteAssigner<Integer> assigner;
+
+        private AssignerLookup(PaletteAssigner<Integer> assigner) {
+            this.assigner = assigner;
+        }
+
+        @Override
+        public int rgb(Integer key) {
+            return assigner.rgb(key);
+        }
+    }
+
+    private static class SynchronizedMapLookup implements Lookup {
+        private final Map<Integer, Integer> colors = new HashMap<>();
+
+        @Override
+        public int rgb(Integer key) {
+            synchronized (colors) {
+                Integer color = colors.get(key);
+                if (color == null) {
+                    color = colors.size();
+                    colors.put(key, color);
+                }
+
+                return color;
+            }
+        }
+    }
+
+    private PaletteAssignerBenchmark() {
+    }
+}
@@ -0,0 +1,135 @@
+package eu.danieldk.quzah.palette;
+
+import eu.danieldk.quzah.pregen.PregeneratedColors;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Unit tests for {@link eu.danieldk.quzah.palette.PaletteAssigner}.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class PaletteAssignerTest {
+    private static final int N_KEYS = 1000;
+
+    private static final int N_THREADS = 8;
+
+    private static final int N_EXTENDED_KEYS = 20000;
+
+    @Test
+    public void stableAssignmentTest() {
+        PaletteAssigner<String> assigner = new PaletteAssigner<>();
+
+        int[] colors = new int[N_KEYS];
+        for (int i = 0; i < N_KEYS; ++i)
+            colors[i] = assigner.rgb(Integer.toString(i));
+
+        for (int i = 0; i < N_KEYS; ++i)
+            Assert.assertEquals("Color of a key should not change", colors[i], assigner.rgb(Integer.toString(i)));
+
+        Assert.assertEquals("Unexpected number of keys", N_KEYS, assigner.size());
+    }
+
+    @Test
+    public void initialPaletteTest() {
+        PaletteAssigner<Integer> assigner = new PaletteAssigner<>(PregeneratedColors.PASTEL, 10);
+
+        for (int i = 0; i < 10; ++i)
+            Assert.assertEquals("Initial colors should be taken from the initial set",
+                    PregeneratedColors.PASTEL.get(9).get(i), assigner.color(i));
+    }
+
+    @Test
+    public void distinctColorsTest() {
+        PaletteAssigner<Integer> assigner = new PaletteAssigner<>();
+
+        int maxColors = PregeneratedColors.UNIFORM.size();
+
+        Set<Integer> colors = new HashSet<>();
+        for (int i = 0; i < maxColors; ++i)
+            colors.add(assigner.rgb(i));
+
+        Assert.assertEquals("Keys should get distinct colors until the palette is exhausted",
+                maxColors, colors.size());
+    }
+
+    @Test
+    public void extensionTest() {
+        PaletteAssigner<Integer> assigner = new PaletteAssigner<>();
+
+        int maxColors = PregeneratedColors.UNIFORM.size();
+
+        int[] pregenerated = new int[maxColors];
+        for (int i = 0; i < maxColors; ++i)
+            pregenerated[i] = assigner.rgb(i);
+
+        Set<Integer> colors = new HashSet<>();
+        for (int i = 0; i < maxColors * 4; ++i)
+            colors.add(assigner.rgb(i));
+
+        Assert.assertEquals("Keys past the largest color set should get distinct colors", maxColors * 4, colors.size());
+
+        for (int i = 0; i < maxColors; ++i)
+            Assert.assertEquals("Extending past the largest color set should not change colors", pregenerated[i],
+                    assigner.rgb(i));
+    }
+
+    @Test(timeout = 5000)
+    public void extensionTimeTest() {
+        PaletteAssigner<Integer> assigner = new PaletteAssigner<>();
+
+        Set<Integer> colors = new HashSet<>();
+        for (int i = 0; i < N_EXTENDED_KEYS; ++i)
+            colors.add(assigner.rgb(i));
+
+        Assert.assertEquals("Keys far past the largest color set should get distinct colors", N_EXTENDED_KEYS,
+                colors.size());
+    }
+
+    @Test
+    public void concurrentAssignmentTest() throws Exception {
+        final PaletteAssigner<Integer> assigner = new PaletteAssigner<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(N_THREADS);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < N_THREADS; ++t) {
+                final int offset = t;
+                results.add(executor.submit(new Callable<int[]>() {
+                    @Override
+                    public int[] call() {
+                        int[] colors = new int[N_KEYS];
+                        for (int i = 0; i < N_KEYS; ++i) {
+                            int key = (i + offset * 97) % N_KEYS;
+                            colors[key] = assigner.rgb(key);
+                        }
+
+                        return colors;
+                    }
+                }));
+            }
+
+            int[] expected = results.get(0).get();
+            for (Future<int[]> result : results)
+                Assert.assertArrayEquals("Threads should observe the same assignment", expected, result.get());
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals("Unexpected number of keys", N_KEYS, assigner.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidInitialSizeTest() {
+        new PaletteAssigner<Integer>(PregeneratedColors.UNIFORM, PregeneratedColors.UNIFORM.size() + 1);
+    }
+}
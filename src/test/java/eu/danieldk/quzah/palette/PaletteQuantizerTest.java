@@ -0,0 +1,115 @@
+package eu.danieldk.quzah.palette;
+
+import eu.danieldk.quzah.colorspace.RGB;
+import eu.danieldk.quzah.pregen.PregeneratedColors;
+import org.apache.sanselan.color.ColorCIELab;
+import org.apache.sanselan.color.ColorConversions;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Unit tests for {@link eu.danieldk.quzah.palette.PaletteQuantizer}.
+ *
+ * @author Daniël de Kok <me@danieldk.eu>
+ */
+public class PaletteQuantizerTest {
+    private static final int N_PIXELS = 100000;
+
+    private static final double EPSILON = 1e-6;
+
+    @Test
+    public void nearestColorTest() {
+        checkNearest(PregeneratedColors.UNIFORM.get(19), PaletteQuantizer.DEFAULT_BITS);
+        checkNearest(PregeneratedColors.PASTEL.get(49), PaletteQuantizer.DEFAULT_BITS);
+        checkNearest(PregeneratedColors.UNIFORM.get(49), 3);
+        checkNearest(PregeneratedColors.UNIFORM.get(9), PaletteQuantizer.MAX_BITS);
+
+        // Ambiguous cells are divided down to single colors.
+        checkNearest(PregeneratedColors.UNIFORM.get(49), 1);
+    }
+
+    @Test
+    public void paletteColorTest() {
+        List<RGB> palette = PregeneratedColors.UNIFORM.get(29);
+        PaletteQuantizer quantizer = new PaletteQuantizer(palette);
+
+        for (int i = 0; i < palette.size(); ++i)
+            Assert.assertEquals("Palette color should map to itself", i, quantizer.index(palette.get(i).getRGB()));
+    }
+
+    @Test
+    public void parallelTest() {
+        PaletteQuantizer quantizer = new PaletteQuantizer(PregeneratedColors.UNIFORM.get(19));
+        int[] pixels = randomPixels();
+
+        int[] expected = new int[pixels.length];
+        quantizer.recolor(pixels, expected);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            int[] recolored = new int[pixels.length];
+            quantizer.recolor(pixels, recolored, pool);
+            Assert.assertArrayEquals("Parallel recoloring should give the same result", expected, recolored);
+
+            int[] indices = new int[pixels.length];
+            quantizer.indices(pixels, indices, pool);
+            for (int i = 0; i < pixels.length; ++i)
+                Assert.assertEquals("Parallel index mapping should give the same result",
+                        quantizer.index(pixels[i]), indices[i]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void alphaTest() {
+        PaletteQuantizer quantizer = new PaletteQuantizer(PregeneratedColors.UNIFORM.get(9));
+        Assert.assertEquals("Alpha should be retained", 0x42, quantizer.nearest(0x42808080) >>> 24);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bufferSizeTest() {
+        new PaletteQuantizer(PregeneratedColors.UNIFORM.get(9)).recolor(new int[10], new int[9]);
+    }
+
+    private void checkNearest(List<RGB> palette, int bits) {
+        PaletteQuantizer quantizer = new PaletteQuantizer(palette, bits);
+
+        ColorCIELab[] paletteLabs = new ColorCIELab[palette.size()];
+        for (int i = 0; i < palette.size(); ++i)
+            paletteLabs[i] = rgbToCIELab(palette.get(i).getRGB());
+
+        for (int pixel : randomPixels()) {
+            ColorCIELab lab = rgbToCIELab(pixel);
+
+            double minDistance = Double.MAX_VALUE;
+            for (ColorCIELab paletteLab : paletteLabs)
+                minDistance = Math.min(minDistance, cieLabDistance(lab, paletteLab));
+
+            double distance = cieLabDistance(lab, paletteLabs[quantizer.index(pixel)]);
+            Assert.assertEquals(String.format("Quantizer did not find the nearest color of %08x", pixel),
+                    minDistance, distance, EPSILON);
+        }
+    }
+
+    private int[] randomPixels() {
+        Random random = new Random(42);
+        int[] pixels = new int[N_PIXELS];
+        for (int i = 0; i < pixels.length; ++i)
+            pixels[i] = random.nextInt();
+
+        return pixels;
+    }
+
+    private double cieLabDistance(ColorCIELab lab1, ColorCIELab lab2) {
+        return Math.sqrt(Math.pow(lab1.L - lab2.L, 2.) + Math.pow(lab1.a - lab2.a, 2.) + Math.pow(lab1.b - lab2.b, 2.));
+    }
+
+    private ColorCIELab rgbToCIELab(int rgb) {
+        return ColorConversions.convertXYZtoCIELab(ColorConversions.convertRGBtoXYZ(rgb));
+    }
+}